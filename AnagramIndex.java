@@ -0,0 +1,547 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    Answers "which words can this rack make" queries, optionally against a
+    board pattern such as ?A??E, where the letters are tiles already on the
+    board and each ? is a space the rack has to fill. Racks may hold blanks
+    (Board.BLK); in the words returned the letters a blank stands for are
+    in lower case, as on the board, and so are any board blanks given in
+    the pattern.
+
+    The words are read out of the lexicon once and grouped by length, then
+    within a length into buckets by letter-count key: bit c is set when the
+    word has at least one of letter c and bit 26 + c when it has at least
+    two. The number of bits a word's key has beyond the tiles available is
+    a lower bound on the blanks it needs, so a query compares its own key
+    against the bucket keys of the lengths it can fill and only looks at
+    the words of buckets that pass. Those are then counted exactly and
+    checked against the pattern. A query for the best few keeps only those,
+    and within a bucket words run from highest face value down, so once it
+    has them it stops at the first word that can't beat the worst.
+
+    Matches are ranked by face value, which is what the word is worth
+    before premiums: blanks score nothing, and filling the spaces with a
+    full rack earns Board.BINGO_BONUS as it would on the board. The index
+    is read-only once built, so any number of threads can query it.
+
+    Usage: java AnagramIndex <lexicon> <rack> [pattern [limit]]
+    (pass "" as the pattern to limit a query without one)
+*/
+public class AnagramIndex {
+    private static final int MIN_LENGTH = 2;
+    private static final int MAX_LENGTH = 63;
+
+    // Matches are ranked by sorting longs packing these fields and where the match is kept
+    private static final int MAX_SORT_SCORE = 0x3FF;
+    private static final int RANK_BITS = 23;
+    private static final int MAX_WORDS = 1 << RANK_BITS;
+
+    /*
+        One word the rack can make. The word itself is only spelled out
+        when asked for, as a query may find thousands and want a few.
+    */
+    public static class Match {
+        private byte[] letters;
+        private int offset;
+        private int length;
+        private char[] pattern;
+        private long blankMask; // Bit i set when a blank from the rack is the i-th letter
+        private int score;
+        private int numTilesPlaced;
+        private int numBlanks;
+        private String word;
+
+        private Match(byte[] letters, int offset, int length, char[] pattern, long blankMask) {
+            this.letters = letters;
+            this.offset = offset;
+            this.length = length;
+            this.pattern = pattern;
+            this.blankMask = blankMask;
+        }
+
+        // Blanks, from the rack or the pattern, in lower case
+        public String getWord() {
+            if (word == null) {
+                char[] chars = new char[length];
+                for (int i = 0; i < length; i++) {
+                    if (pattern != null && pattern[i] != Board.BLK) {
+                        chars[i] = pattern[i];
+                    }
+                    else {
+                        chars[i] = (char) ((((blankMask >>> i) & 1) != 0 ? 'a' : 'A') + letters[offset + i]);
+                    }
+                }
+                word = new String(chars);
+            }
+            return word;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        // Tiles taken from the rack, blanks included
+        public int getNumTilesPlaced() {
+            return numTilesPlaced;
+        }
+
+        // Blanks taken from the rack
+        public int getNumBlanks() {
+            return numBlanks;
+        }
+
+        @Override
+        public String toString() {
+            return getWord()+" "+score;
+        }
+    }
+
+    /*
+        The words of one length, bucket by bucket in ascending key order and
+        within a bucket highest face value first, so the first word of a
+        bucket bounds what any of them can score.
+    */
+    private static class LengthTable {
+        private long[] keys;
+        private int[] starts; // First word of each bucket, and the word count at the end
+        private boolean[] exact; // No word in the bucket has a letter three times, so its key is its letter counts
+        private byte[] letters; // Letter codes, length to a word
+        private int[] ranks; // Alphabetical position in the whole lexicon
+        private short[] values; // Face value with every letter a real tile
+    }
+
+    /*
+        Depth-first walk of the DAWG, filing every word under its length.
+        Edges leave a node in letter order, so words come out alphabetically
+        and the count so far is each word's rank.
+    */
+    private static class Collector {
+        private Lexicon lexicon;
+        private byte[] prefix = new byte[MAX_LENGTH];
+        private List<List<byte[]>> words = new ArrayList<List<byte[]>>();
+        private List<List<Integer>> ranks = new ArrayList<List<Integer>>();
+        private int numWords;
+
+        private Collector(Lexicon lexicon) {
+            this.lexicon = lexicon;
+        }
+
+        private void collect(int node, int depth) {
+            if (node == 0) return;
+            if (depth == prefix.length) {
+                throw new IllegalArgumentException("Lexicon has words over "+prefix.length+" letters");
+            }
+            for (int e = node; ; e++) {
+                int code = lexicon.edgeLetter(e);
+                if (code < Lexicon.NUM_LETTERS) {
+                    prefix[depth] = (byte) code;
+                    if (lexicon.edgeEndsWord(e)) {
+                        while (words.size() <= depth + 1) {
+                            words.add(new ArrayList<byte[]>());
+                            ranks.add(new ArrayList<Integer>());
+                        }
+                        words.get(depth + 1).add(Arrays.copyOf(prefix, depth + 1));
+                        ranks.get(depth + 1).add(numWords++);
+                    }
+                    collect(lexicon.edgeTarget(e), depth + 1);
+                }
+                if (lexicon.isLastEdge(e)) return;
+            }
+        }
+    }
+
+    private LengthTable[] byLength;
+    private int numWords;
+
+    public AnagramIndex(Lexicon lexicon) {
+        Collector collector = new Collector(lexicon);
+        collector.collect(lexicon.getDawgRoot(), 0);
+        if (collector.numWords > MAX_WORDS) {
+            throw new IllegalArgumentException("Lexicon has over "+MAX_WORDS+" words");
+        }
+        byLength = new LengthTable[collector.words.size()];
+        for (int length = MIN_LENGTH; length < byLength.length; length++) {
+            byLength[length] = table(collector.words.get(length), collector.ranks.get(length), length);
+            numWords += collector.words.get(length).size();
+        }
+    }
+
+    private static LengthTable table(List<byte[]> words, List<Integer> ranks, int length) {
+        int n = words.size();
+        long[] wordKeys = new long[n];
+        short[] wordValues = new short[n];
+        boolean[] tripled = new boolean[n];
+        int[] counts = new int[Lexicon.NUM_LETTERS];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            byte[] word = words.get(i);
+            wordKeys[i] = key(word);
+            Arrays.fill(counts, 0);
+            for (byte code : word) {
+                wordValues[i] += Board.getLetterValue((char) ('A' + code));
+                tripled[i] |= ++counts[code] > 2;
+            }
+            order[i] = i;
+        }
+        // Stable, so words of equal value stay alphabetical
+        Arrays.sort(order, (a, b) -> (wordKeys[a] != wordKeys[b])
+                ? Long.compare(wordKeys[a], wordKeys[b]) : wordValues[b] - wordValues[a]);
+
+        LengthTable table = new LengthTable();
+        long[] keys = new long[n];
+        int[] starts = new int[n + 1];
+        boolean[] exact = new boolean[n];
+        int buckets = 0;
+        table.letters = new byte[n * length];
+        table.ranks = new int[n];
+        table.values = new short[n];
+        for (int i = 0; i < n; i++) {
+            int w = order[i];
+            if (buckets == 0 || keys[buckets - 1] != wordKeys[w]) {
+                keys[buckets] = wordKeys[w];
+                starts[buckets] = i;
+                exact[buckets] = true;
+                buckets++;
+            }
+            exact[buckets - 1] &= !tripled[w];
+            System.arraycopy(words.get(w), 0, table.letters, i * length, length);
+            table.ranks[i] = ranks.get(w);
+            table.values[i] = wordValues[w];
+        }
+        starts[buckets] = n;
+        table.keys = Arrays.copyOf(keys, buckets);
+        table.starts = Arrays.copyOf(starts, buckets + 1);
+        table.exact = Arrays.copyOf(exact, buckets);
+        return table;
+    }
+
+    private static long key(byte[] word) {
+        long key = 0;
+        for (byte code : word) {
+            long bit = 1L << code;
+            key |= ((key & bit) != 0) ? bit << Lexicon.NUM_LETTERS : bit;
+        }
+        return key;
+    }
+
+    private static long key(int[] counts) {
+        long key = 0;
+        for (int c = 0; c < Lexicon.NUM_LETTERS; c++) {
+            if (counts[c] > 0) key |= 1L << c;
+            if (counts[c] > 1) key |= 1L << (Lexicon.NUM_LETTERS + c);
+        }
+        return key;
+    }
+
+    public int getNumWords() {
+        return numWords;
+    }
+
+    // Every word of two letters or more the rack can make on its own
+    public List<Match> query(char[] rack) {
+        return query(rack, null);
+    }
+
+    /*
+        Every word the rack can make, best first. With a pattern only words
+        of the pattern's length that have its letters in its places are
+        returned, the rack filling the rest; ? marks a space to fill and a
+        lower-case letter is a blank already on the board. Empty rack slots
+        (Board.EMT) are ignored.
+    */
+    public List<Match> query(char[] rack, String pattern) {
+        return query(rack, pattern, Integer.MAX_VALUE);
+    }
+
+    /*
+        The best limit words the rack can make, in the same order as the
+        full list would start. Only the sort keys of the best so far are
+        kept, so asking for a few costs little more than counting.
+    */
+    public List<Match> query(char[] rack, String pattern, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: "+limit);
+        }
+        Query query = new Query(rack, pattern, limit);
+        run(query);
+        return query.ranked();
+    }
+
+    // How many words the rack can make, without building any of them
+    public int count(char[] rack, String pattern) {
+        Query query = new Query(rack, pattern, 0);
+        run(query);
+        return query.numMatches;
+    }
+
+    // Bingo-length words first, then longest first, so a limited query's cut-off rises early
+    private void run(Query query) {
+        if (query.fixed == null) {
+            long available = key(query.counts);
+            int bingo = Game.NUM_TILES_IN_RACK;
+            int longest = Math.min(query.numTiles, byLength.length - 1);
+            if (longest >= bingo) {
+                scan(query, byLength[bingo], bingo, available, 0, Board.BINGO_BONUS);
+            }
+            for (int length = longest; length >= MIN_LENGTH; length--) {
+                if (length != bingo) {
+                    scan(query, byLength[length], length, available, 0, 0);
+                }
+            }
+        }
+        else {
+            int length = query.fixed.length;
+            if (query.spaces > 0 && query.spaces <= query.numTiles && length < byLength.length) {
+                int bonus = (query.spaces == Game.NUM_TILES_IN_RACK) ? Board.BINGO_BONUS : 0;
+                scan(query, byLength[length], length, query.available, query.required, bonus);
+            }
+        }
+    }
+
+    /*
+        Visits the words of every bucket whose key the rack can cover. Just
+        counting, an exact bucket without a pattern matches whole: its key
+        says how many blanks each word needs. Once a limited query has its
+        fill, a word whose face value plus bonus is below the cut-off can't
+        get in, and nor can the rest of its bucket.
+    */
+    private static void scan(Query query, LengthTable table, int length, long available, long required, int bonus) {
+        if (table == null) return;
+        long[] keys = table.keys;
+        int blanks = query.blanks;
+        boolean counting = (query.limit == 0 && query.fixed == null);
+        for (int b = 0; b < keys.length; b++) {
+            long key = keys[b];
+            if ((key & required) != required || Long.bitCount(key & ~available) > blanks) continue;
+            int end = table.starts[b + 1];
+            if (counting && table.exact[b]) {
+                query.numMatches += end - table.starts[b];
+                continue;
+            }
+            for (int w = table.starts[b]; w < end && table.values[w] + bonus >= query.cutoff; w++) {
+                if (query.fill(table, w, length)) {
+                    query.keep(table, w, length);
+                }
+            }
+        }
+    }
+
+    /*
+        One query: the rack and pattern, the details of the word filled
+        last, and the matches kept so far. Each kept match has a slot and a
+        sort key packing what the matches are ranked by (highest score, then
+        longer words, then alphabetical) above its slot, so sorting the keys
+        ranks the matches. Once limit are kept the keys form a max-heap, and
+        a new match only goes in by taking the worst one's slot.
+    */
+    private static class Query {
+        private int[] counts = new int[Lexicon.NUM_LETTERS];
+        private int numTiles;
+        private int blanks;
+        private byte[] fixed; // Pattern letter codes, -1 for a space; null without a pattern
+        private char[] pattern;
+        private int spaces;
+        private long required;
+        private long available;
+        private int limit;
+
+        private long blankMask; // Bit i set when a blank from the rack is the i-th letter
+        private int placed;
+        private int used;
+        private int score;
+
+        private long[] kept = new long[16];
+        private Match[] slots = new Match[16];
+        private int numKept;
+        private int numMatches;
+        private int cutoff = Integer.MIN_VALUE; // Score of the worst kept match once there are limit
+
+        private Query(char[] rack, String pattern, int limit) {
+            this.limit = limit;
+            for (char tile : rack) {
+                if (tile == Board.EMT || tile == '\0') continue;
+                if (tile == Board.BLK) {
+                    blanks++;
+                }
+                else {
+                    int code = Lexicon.letterCode(tile);
+                    if (code < 0) {
+                        throw new IllegalArgumentException("Not a tile: "+tile);
+                    }
+                    counts[code]++;
+                }
+                numTiles++;
+            }
+            if (pattern == null || pattern.isEmpty()) {
+                return;
+            }
+            int length = pattern.length();
+            this.pattern = pattern.toCharArray();
+            fixed = new byte[length];
+            int[] fixedCounts = new int[Lexicon.NUM_LETTERS];
+            for (int i = 0; i < length; i++) {
+                char c = pattern.charAt(i);
+                if (c == Board.BLK) {
+                    fixed[i] = -1;
+                    spaces++;
+                    continue;
+                }
+                int code = Lexicon.letterCode(c);
+                if (code < 0) {
+                    throw new IllegalArgumentException("Not a letter or "+Board.BLK+" in pattern: "+c);
+                }
+                fixed[i] = (byte) code;
+                fixedCounts[code]++;
+            }
+            required = key(fixedCounts);
+            for (int c = 0; c < Lexicon.NUM_LETTERS; c++) {
+                fixedCounts[c] += counts[c];
+            }
+            available = key(fixedCounts);
+        }
+
+        /*
+            Fills the word from the rack counts, earlier copies of a letter
+            taking the real tiles and later ones the blanks. False if the
+            rack can't make it.
+        */
+        private boolean fill(LengthTable table, int w, int length) {
+            byte[] letters = table.letters;
+            int offset = w * length;
+            blankMask = 0;
+            used = 0;
+            placed = 0;
+            score = 0;
+            int i = 0;
+            for (; i < length; i++) {
+                int code = letters[offset + i];
+                if (fixed != null && fixed[i] >= 0) {
+                    if (fixed[i] != code) break;
+                    score += Board.getLetterValue(pattern[i]);
+                    continue;
+                }
+                placed++;
+                if (counts[code] > 0) {
+                    counts[code]--;
+                    score += Board.getLetterValue((char) ('A' + code));
+                }
+                else {
+                    if (++used > blanks) break;
+                    blankMask |= 1L << i;
+                }
+            }
+            // Hand back the tiles taken, leaving the counts as they were
+            for (int j = (i < length) ? i - 1 : length - 1; j >= 0; j--) {
+                if ((fixed == null || fixed[j] < 0) && ((blankMask >>> j) & 1) == 0) {
+                    counts[letters[offset + j]]++;
+                }
+            }
+            if (i < length) return false;
+            if (placed == Game.NUM_TILES_IN_RACK) {
+                score += Board.BINGO_BONUS;
+            }
+            return true;
+        }
+
+        private void keep(LengthTable table, int w, int length) {
+            numMatches++;
+            if (limit == 0) return;
+            long sortScore = MAX_SORT_SCORE - Math.min(score, MAX_SORT_SCORE);
+            long sortLength = MAX_LENGTH - length;
+            long key = ((sortScore << 6 | sortLength) << RANK_BITS | table.ranks[w]) << RANK_BITS;
+            if (numKept < limit) {
+                if (numKept == kept.length) {
+                    kept = Arrays.copyOf(kept, 2 * numKept);
+                    slots = Arrays.copyOf(slots, 2 * numKept);
+                }
+                slots[numKept] = match(table, w, length);
+                kept[numKept] = key | numKept;
+                numKept++;
+                if (numKept < limit) return;
+                for (int i = limit / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+            }
+            else if (key < kept[0]) {
+                int slot = (int) (kept[0] & (MAX_WORDS - 1));
+                slots[slot] = match(table, w, length);
+                kept[0] = key | slot;
+                siftDown(0);
+            }
+            else {
+                return;
+            }
+            cutoff = MAX_SORT_SCORE - (int) (kept[0] >>> (2 * RANK_BITS + 6));
+        }
+
+        private void siftDown(int i) {
+            long key = kept[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= numKept) break;
+                if (child + 1 < numKept && kept[child + 1] > kept[child]) child++;
+                if (kept[child] <= key) break;
+                kept[i] = kept[child];
+                i = child;
+            }
+            kept[i] = key;
+        }
+
+        // The word filled last
+        private Match match(LengthTable table, int w, int length) {
+            Match match = new Match(table.letters, w * length, length, pattern, blankMask);
+            match.score = score;
+            match.numTilesPlaced = placed;
+            match.numBlanks = used;
+            return match;
+        }
+
+        // The kept matches, best first
+        private List<Match> ranked() {
+            Arrays.sort(kept, 0, numKept);
+            List<Match> ranked = new ArrayList<Match>(numKept);
+            for (int i = 0; i < numKept; i++) {
+                ranked.add(slots[(int) (kept[i] & (MAX_WORDS - 1))]);
+            }
+            return ranked;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java AnagramIndex <lexicon> <rack> [pattern [limit]]");
+            return;
+        }
+        Lexicon lexicon;
+        try {
+            lexicon = LexiconRegistry.get(args[0]);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't load "+args[0]+": "+e.getMessage());
+            return;
+        }
+        long t0 = System.nanoTime();
+        AnagramIndex index = new AnagramIndex(lexicon);
+        System.out.printf("Indexed %d words in %.0f ms%n", index.getNumWords(), (System.nanoTime() - t0) / 1e6);
+
+        List<Match> matches;
+        t0 = System.nanoTime();
+        try {
+            String pattern = (args.length > 2) ? args[2] : null;
+            int limit = (args.length > 3) ? Integer.parseInt(args[3]) : Integer.MAX_VALUE;
+            matches = index.query(args[1].toCharArray(), pattern, limit);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("ERROR: "+e.getMessage());
+            return;
+        }
+        long elapsed = System.nanoTime() - t0;
+        for (Match match : matches) {
+            System.out.println(match);
+        }
+        System.out.printf("%d words in %d us%n", matches.size(), elapsed / 1000);
+    }
+}
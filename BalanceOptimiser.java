@@ -0,0 +1,675 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+    Searches for a tile distribution and bonus layout that make for fairer
+    games, judged by two-player self-play rather than by hand.
+
+    Each generation proposes variants of the current best, each one small
+    change: a tile moved from one letter to another, two groups of bonus
+    squares swapped, or one group given a different bonus. Bonus squares
+    change a whole orbit of the board's symmetries at a time, so a variant
+    is as symmetric as the standard layout and the centre stays as it is.
+
+    A variant's cost grows with the first player's average lead, with its
+    spread's standard deviation, and with how far its average score and
+    bingo rate drift from the targets (by default those of the starting
+    layout, so a variant can't win just by making games low-scoring).
+
+    Variants are weeded out by successive halving: all of them play a few
+    games, the better half play twice as many, and so on until one is left
+    to play the full number against the current best. Every variant in a
+    generation plays the same seeds, so they are compared on the same
+    draws, and the current best is replayed on fresh seeds each generation
+    so an early lucky result can't hold on. The search stops after a run of
+    generations with no improvement. Games run on a fixed pool with a
+    thread per core.
+
+    After every generation the current best and the search state go to a
+    checkpoint file, written to the side and moved into place, and a run
+    given -resume carries on from it.
+
+    Usage: java BalanceOptimiser <lexicon> [-games 2000] [-variants 7] [-generations 100]
+               [-patience 10] [-threads n] [-seed 1] [-leaves file] [-checkpoint file] [-resume]
+*/
+public class BalanceOptimiser {
+    private static final int MAX_TURNS = 200;
+    private static final int GAMES_PER_TASK = 8;
+    private static final int CHECKPOINT_VERSION = 1;
+
+    // Each term of the cost is (difference / scale) squared
+    private static final double ADVANTAGE_SCALE = 10; // Points of first-player lead
+    private static final double SPREAD_SCALE = 100;   // Points of spread standard deviation
+    private static final double SCORE_SCALE = 20;     // Points of average score away from the target
+    private static final double BINGO_SCALE = 0.25;   // Bingos per game away from the target
+
+    private static final char[] BONUSES = { Board.NBS, Board.DLS, Board.DWS, Board.TLS, Board.TWS };
+
+    // Cells ([row][col] as row * BOARD_WIDTH + col) that share a bonus under the standard layout's symmetries
+    private static final List<int[]> ORBITS = new ArrayList<int[]>();
+
+    static {
+        findOrbits();
+    }
+
+    public static class Variant {
+        private int[] distribution;
+        private char[][] bonusValues;
+
+        public Variant(int[] distribution, char[][] bonusValues) {
+            this.distribution = distribution.clone();
+            this.bonusValues = new char[bonusValues.length][];
+            for (int row = 0; row < bonusValues.length; row++) {
+                this.bonusValues[row] = bonusValues[row].clone();
+            }
+        }
+
+        public static Variant standard() {
+            return new Variant(Game.getDefaultTileDistribution(), Board.getDefaultBonusValues());
+        }
+
+        public int[] getDistribution() {
+            return this.distribution;
+        }
+
+        public char[][] getBonusValues() {
+            return this.bonusValues;
+        }
+    }
+
+    // Totals over the games a variant has played; first is seat 0
+    public static class Metrics {
+        private long games;
+        private double scoreSum;
+        private double scoreSquares;
+        private double spreadSum;
+        private double spreadSquares;
+        private long firstWins;
+        private long ties;
+        private long bingos;
+
+        private void add(int first, int second, int gameBingos) {
+            games++;
+            scoreSum += first + second;
+            scoreSquares += (double) first * first + (double) second * second;
+            spreadSum += first - second;
+            spreadSquares += (double) (first - second) * (first - second);
+            if (first > second) {
+                firstWins++;
+            }
+            else if (first == second) {
+                ties++;
+            }
+            bingos += gameBingos;
+        }
+
+        private void add(Metrics other) {
+            games += other.games;
+            scoreSum += other.scoreSum;
+            scoreSquares += other.scoreSquares;
+            spreadSum += other.spreadSum;
+            spreadSquares += other.spreadSquares;
+            firstWins += other.firstWins;
+            ties += other.ties;
+            bingos += other.bingos;
+        }
+
+        public long getGames() {
+            return this.games;
+        }
+
+        // Per player per game
+        public double getAverageScore() {
+            return scoreSum / (2.0 * games);
+        }
+
+        public double getScoreVariance() {
+            double mean = getAverageScore();
+            return scoreSquares / (2.0 * games) - mean * mean;
+        }
+
+        // Mean of the first player's score minus the second's
+        public double getFirstPlayerAdvantage() {
+            return spreadSum / games;
+        }
+
+        public double getSpreadStdDev() {
+            double mean = getFirstPlayerAdvantage();
+            return Math.sqrt(Math.max(0, spreadSquares / games - mean * mean));
+        }
+
+        // Ties count as half a win
+        public double getFirstPlayerWinRate() {
+            return (firstWins + 0.5 * ties) / games;
+        }
+
+        public double getBingoRate() {
+            return (double) bingos / games;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, score %.1f (sd %.1f), first player %+.1f (%.1f%% wins), spread sd %.1f, %.3f bingos/game",
+                    games, getAverageScore(), Math.sqrt(Math.max(0, getScoreVariance())), getFirstPlayerAdvantage(),
+                    100 * getFirstPlayerWinRate(), getSpreadStdDev(), getBingoRate());
+        }
+    }
+
+    // A variant under evaluation in one generation
+    private static class Entry {
+        private Variant variant;
+        private Metrics metrics = new Metrics();
+        private double cost;
+    }
+
+    private Lexicon lexicon;
+    private Strategy strategy;
+    private ExecutorService pool;
+    private ThreadLocal<MoveWorker> workers;
+    private double targetScore;
+    private double targetBingos;
+    private long gamesPlayed;
+
+    public BalanceOptimiser(Lexicon lexicon, Strategy strategy, int threads) {
+        this.lexicon = lexicon;
+        this.strategy = strategy;
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.workers = MoveWorker.perThread(() -> new MoveWorker(this.lexicon));
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public void setTargets(double score, double bingos) {
+        this.targetScore = score;
+        this.targetBingos = bingos;
+    }
+
+    public long getGamesPlayed() {
+        return gamesPlayed;
+    }
+
+    public double cost(Metrics metrics) {
+        double advantage = metrics.getFirstPlayerAdvantage() / ADVANTAGE_SCALE;
+        double spread = metrics.getSpreadStdDev() / SPREAD_SCALE;
+        double score = (metrics.getAverageScore() - targetScore) / SCORE_SCALE;
+        double bingos = (metrics.getBingoRate() - targetBingos) / BINGO_SCALE;
+        return advantage * advantage + spread * spread + score * score + bingos * bingos;
+    }
+
+    /*
+        Plays games from (inclusive) to to (exclusive) for each variant and
+        adds them to its metrics. Game i uses seed Seeds.mix(seed + i)
+        whatever the variant, so every variant is dealt the same first racks.
+    */
+    public void evaluate(List<Variant> variants, List<Metrics> metrics, long seed, long from, long to)
+            throws InterruptedException {
+        List<Callable<Metrics>> tasks = new ArrayList<Callable<Metrics>>();
+        List<Integer> owners = new ArrayList<Integer>();
+        for (int v = 0; v < variants.size(); v++) {
+            Variant variant = variants.get(v);
+            for (long first = from; first < to; first += GAMES_PER_TASK) {
+                final long start = first;
+                final long end = Math.min(to, first + GAMES_PER_TASK);
+                tasks.add(() -> {
+                    MoveWorker worker = workers.get();
+                    Metrics result = new Metrics();
+                    for (long i = start; i < end; i++) {
+                        playGame(worker, variant, Seeds.mix(seed + i), result);
+                    }
+                    return result;
+                });
+                owners.add(v);
+            }
+        }
+        List<Future<Metrics>> futures = pool.invokeAll(tasks);
+        for (int t = 0; t < futures.size(); t++) {
+            try {
+                metrics.get(owners.get(t)).add(futures.get(t).get());
+            }
+            catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        gamesPlayed += variants.size() * (to - from);
+    }
+
+    public Metrics evaluate(Variant variant, long seed, long games) throws InterruptedException {
+        Metrics metrics = new Metrics();
+        evaluate(Arrays.asList(variant), Arrays.asList(metrics), seed, 0, games);
+        return metrics;
+    }
+
+    private void playGame(MoveWorker worker, Variant variant, long seed, Metrics metrics) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        Game game = new Game(lexicon, 2, rng.split(), variant.distribution, variant.bonusValues);
+        int bingos = 0;
+        int player = 0;
+        int passes = 0;
+        for (int turn = 0; turn < MAX_TURNS && !game.isOver() && passes < 4; turn++) {
+            worker.moves.clear();
+            worker.generator.generate(game.board, game.playerRacks[player], worker.moves);
+            Move move = strategy.chooseMove(game, player, worker.moves, rng);
+            if (move == null) {
+                passes++;
+            }
+            else {
+                if (move.getNumTilesPlaced() == Game.NUM_TILES_IN_RACK) {
+                    bingos++;
+                }
+                game.applyMove(move, player);
+                passes = 0;
+            }
+            player = 1 - player;
+        }
+        metrics.add(game.playerScores[0], game.playerScores[1], bingos);
+    }
+
+    /*
+        One generation: the current best and numVariants changes to it,
+        narrowed down by successive halving. Returns the winner, which is the
+        current best unless a variant beat it over the full number of games.
+    */
+    private Entry runGeneration(Variant best, int numVariants, long games, long seed, SplittableRandom rng)
+            throws InterruptedException {
+        Entry incumbent = new Entry();
+        incumbent.variant = best;
+        List<Entry> challengers = new ArrayList<Entry>();
+        for (int i = 0; i < numVariants; i++) {
+            Entry entry = new Entry();
+            entry.variant = mutate(best, rng);
+            challengers.add(entry);
+        }
+
+        int halvings = 0;
+        while ((1 << halvings) < numVariants) {
+            halvings++;
+        }
+        long played = 0;
+        for (int round = 0; round <= halvings; round++) {
+            long target = Math.max(1, games >> (halvings - round));
+            List<Entry> entries = new ArrayList<Entry>(challengers);
+            entries.add(incumbent);
+            List<Variant> variants = new ArrayList<Variant>();
+            List<Metrics> metrics = new ArrayList<Metrics>();
+            for (Entry entry : entries) {
+                variants.add(entry.variant);
+                metrics.add(entry.metrics);
+            }
+            evaluate(variants, metrics, seed, played, target);
+            played = target;
+            for (Entry entry : entries) {
+                entry.cost = cost(entry.metrics);
+            }
+            challengers.sort(Comparator.comparingDouble(entry -> entry.cost));
+            // The current best always plays on, so the last challenger faces it over every game
+            int keep = (challengers.size() + 1) / 2;
+            challengers.subList(keep, challengers.size()).clear();
+        }
+        Entry challenger = challengers.isEmpty() ? null : challengers.get(0);
+        return (challenger != null && challenger.cost < incumbent.cost) ? challenger : incumbent;
+    }
+
+    // A copy of the variant with one random change
+    public static Variant mutate(Variant variant, SplittableRandom rng) {
+        Variant result = new Variant(variant.distribution, variant.bonusValues);
+        while (true) {
+            int kind = rng.nextInt(3);
+            if (kind == 0) {
+                // Move a tile from one letter to another, leaving the blanks alone
+                int from = 1 + rng.nextInt(TileBag.NUM_KINDS - 1);
+                int to = 1 + rng.nextInt(TileBag.NUM_KINDS - 1);
+                if (from == to || result.distribution[from] <= 1) continue;
+                result.distribution[from]--;
+                result.distribution[to]++;
+                return result;
+            }
+            if (ORBITS.isEmpty()) continue;
+            int[] orbit = ORBITS.get(rng.nextInt(ORBITS.size()));
+            char bonus = bonusAt(result, orbit[0]);
+            if (kind == 1) {
+                // Swap with another orbit of the same size holding a different bonus
+                int[] other = ORBITS.get(rng.nextInt(ORBITS.size()));
+                char otherBonus = bonusAt(result, other[0]);
+                if (other.length != orbit.length || otherBonus == bonus) continue;
+                setBonus(result, orbit, otherBonus);
+                setBonus(result, other, bonus);
+                return result;
+            }
+            char newBonus = BONUSES[rng.nextInt(BONUSES.length)];
+            if (newBonus == bonus) continue;
+            setBonus(result, orbit, newBonus);
+            return result;
+        }
+    }
+
+    private static char bonusAt(Variant variant, int cell) {
+        return variant.bonusValues[cell / Board.BOARD_WIDTH][cell % Board.BOARD_WIDTH];
+    }
+
+    private static void setBonus(Variant variant, int[] orbit, char bonus) {
+        for (int cell : orbit) {
+            variant.bonusValues[cell / Board.BOARD_WIDTH][cell % Board.BOARD_WIDTH] = bonus;
+        }
+    }
+
+    /*
+        Groups the cells into orbits under the rotations and reflections of
+        the hexagon that leave the standard layout unchanged. In axial terms
+        about the centre a sixth of a turn is (q, r) -> (q - r, q) and
+        (q, r) -> (r, q) is a reflection. The centre is left out.
+    */
+    private static void findOrbits() {
+        int width = Board.BOARD_WIDTH;
+        int centre = width / 2;
+        char[][] standard = Board.getDefaultBonusValues();
+        List<int[]> symmetries = new ArrayList<int[]>();
+        for (int turns = 0; turns < 6; turns++) {
+            for (int reflect = 0; reflect < 2; reflect++) {
+                int[] image = new int[width * width];
+                boolean keeps = true;
+                for (int row = 0; row < width; row++) {
+                    for (int col = 0; col < width; col++) {
+                        int q = col - centre;
+                        int r = row - centre;
+                        if (reflect == 1) {
+                            int t = q;
+                            q = r;
+                            r = t;
+                        }
+                        for (int k = 0; k < turns; k++) {
+                            int t = q - r;
+                            r = q;
+                            q = t;
+                        }
+                        int c = q + centre;
+                        int w = r + centre;
+                        boolean inside = c >= 0 && c < width && w >= 0 && w < width;
+                        char mapped = inside ? standard[w][c] : Board.VOI;
+                        if (mapped != standard[row][col]) {
+                            keeps = false;
+                        }
+                        image[row * width + col] = inside ? w * width + c : -1;
+                    }
+                }
+                if (keeps) {
+                    symmetries.add(image);
+                }
+            }
+        }
+
+        boolean[] seen = new boolean[width * width];
+        seen[centre * width + centre] = true;
+        for (int cell = 0; cell < width * width; cell++) {
+            if (seen[cell] || standard[cell / width][cell % width] == Board.VOI) continue;
+            int[] orbit = new int[symmetries.size()];
+            int size = 0;
+            for (int[] image : symmetries) {
+                int target = image[cell];
+                if (!seen[target]) {
+                    seen[target] = true;
+                    orbit[size++] = target;
+                }
+            }
+            ORBITS.add(Arrays.copyOf(orbit, size));
+        }
+    }
+
+    // The layout as a BONUS_TEMPLATE declaration for Board: each row's cells, VOI left out
+    public static String formatBonusValues(char[][] values) {
+        StringBuilder sb = new StringBuilder("    private static final String[] BONUS_TEMPLATE = {\n");
+        for (int row = 0; row < values.length; row++) {
+            sb.append("        \"");
+            for (char bonus : values[row]) {
+                if (bonus != Board.VOI) {
+                    sb.append(bonus);
+                }
+            }
+            sb.append((row < values.length - 1) ? "\",\n" : "\"\n");
+        }
+        return sb.append("    };\n").toString();
+    }
+
+    // Search state saved after every generation
+    private static class Checkpoint {
+        private long seed;
+        private int generation;
+        private int stale;
+        private double targetScore;
+        private double targetBingos;
+        private double cost;
+        private Variant best;
+
+        private void write(Path path) throws IOException {
+            Path temp = Paths.get(path + ".tmp");
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+                out.println("version "+CHECKPOINT_VERSION);
+                out.println("seed "+seed);
+                out.println("generation "+generation);
+                out.println("stale "+stale);
+                out.println("targetScore "+targetScore);
+                out.println("targetBingos "+targetBingos);
+                out.println("cost "+cost);
+                StringBuilder counts = new StringBuilder("distribution");
+                for (int count : best.distribution) {
+                    counts.append(' ').append(count);
+                }
+                out.println(counts);
+                for (char[] row : best.bonusValues) {
+                    out.println("bonus "+new String(row));
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static Checkpoint read(Path path) throws IOException {
+            Checkpoint checkpoint = new Checkpoint();
+            int[] distribution = null;
+            List<char[]> rows = new ArrayList<char[]>();
+            try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] parts = line.trim().split(" ");
+                    try {
+                        switch (parts[0]) {
+                            case "version":
+                                if (Integer.parseInt(parts[1]) != CHECKPOINT_VERSION) {
+                                    throw new IOException(path+" has unsupported version "+parts[1]+".");
+                                }
+                                break;
+                            case "seed":
+                                checkpoint.seed = Long.parseLong(parts[1]);
+                                break;
+                            case "generation":
+                                checkpoint.generation = Integer.parseInt(parts[1]);
+                                break;
+                            case "stale":
+                                checkpoint.stale = Integer.parseInt(parts[1]);
+                                break;
+                            case "targetScore":
+                                checkpoint.targetScore = Double.parseDouble(parts[1]);
+                                break;
+                            case "targetBingos":
+                                checkpoint.targetBingos = Double.parseDouble(parts[1]);
+                                break;
+                            case "cost":
+                                checkpoint.cost = Double.parseDouble(parts[1]);
+                                break;
+                            case "distribution":
+                                distribution = new int[parts.length - 1];
+                                for (int i = 1; i < parts.length; i++) {
+                                    distribution[i - 1] = Integer.parseInt(parts[i]);
+                                }
+                                break;
+                            case "bonus":
+                                rows.add(parts[1].toCharArray());
+                                break;
+                            default:
+                                throw new IOException(path+": unknown line '"+line+"'.");
+                        }
+                    }
+                    catch (RuntimeException e) {
+                        throw new IOException(path+": bad line '"+line+"'.");
+                    }
+                }
+            }
+            if (distribution == null || distribution.length != TileBag.NUM_KINDS || rows.size() != Board.BOARD_WIDTH) {
+                throw new IOException(path+" is incomplete.");
+            }
+            char[][] bonusValues = rows.toArray(new char[0][]);
+            try {
+                new Board().setBonusValues(bonusValues);
+            }
+            catch (IllegalArgumentException e) {
+                throw new IOException(path+": "+e.getMessage());
+            }
+            checkpoint.best = new Variant(distribution, bonusValues);
+            return checkpoint;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long games = 2000;
+        int numVariants = 7;
+        int generations = 100;
+        int patience = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        String leavesFile = null;
+        String checkpointFile = "balance.checkpoint";
+        boolean resume = false;
+        String lexiconFile = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-games":
+                        games = Long.parseLong(args[++i]);
+                        break;
+                    case "-variants":
+                        numVariants = Integer.parseInt(args[++i]);
+                        break;
+                    case "-generations":
+                        generations = Integer.parseInt(args[++i]);
+                        break;
+                    case "-patience":
+                        patience = Integer.parseInt(args[++i]);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "-leaves":
+                        leavesFile = args[++i];
+                        break;
+                    case "-checkpoint":
+                        checkpointFile = args[++i];
+                        break;
+                    case "-resume":
+                        resume = true;
+                        break;
+                    default:
+                        lexiconFile = args[i];
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            lexiconFile = null;
+        }
+        if (lexiconFile == null || games < 1 || numVariants < 1 || threads < 1) {
+            System.out.println("Usage: java BalanceOptimiser <lexicon> [-games 2000] [-variants 7] [-generations 100]");
+            System.out.println("           [-patience 10] [-threads n] [-seed 1] [-leaves file] [-checkpoint file] [-resume]");
+            return;
+        }
+
+        Lexicon lexicon;
+        Strategy strategy = Strategy.GREEDY;
+        try {
+            lexicon = LexiconRegistry.get(lexiconFile);
+            if (leavesFile != null) {
+                strategy = Strategy.equity(LeaveTable.load(leavesFile));
+            }
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: "+e.getMessage());
+            return;
+        }
+
+        BalanceOptimiser optimiser = new BalanceOptimiser(lexicon, strategy, threads);
+        Path checkpointPath = Paths.get(checkpointFile);
+        Checkpoint checkpoint;
+        long start = System.nanoTime();
+        if (resume) {
+            try {
+                checkpoint = Checkpoint.read(checkpointPath);
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: couldn't resume: "+e.getMessage());
+                optimiser.shutdown();
+                return;
+            }
+            optimiser.setTargets(checkpoint.targetScore, checkpoint.targetBingos);
+            System.out.println("Resuming at generation "+(checkpoint.generation + 1)+" with cost "
+                    +String.format("%.4f", checkpoint.cost));
+        }
+        else {
+            // The standard layout sets the targets and is the first best
+            checkpoint = new Checkpoint();
+            checkpoint.seed = seed;
+            checkpoint.best = Variant.standard();
+            Metrics baseline = optimiser.evaluate(checkpoint.best, Seeds.mix(seed), games);
+            checkpoint.targetScore = baseline.getAverageScore();
+            checkpoint.targetBingos = baseline.getBingoRate();
+            optimiser.setTargets(checkpoint.targetScore, checkpoint.targetBingos);
+            checkpoint.cost = optimiser.cost(baseline);
+            System.out.println("Standard layout: "+baseline+String.format(", cost %.4f", checkpoint.cost));
+        }
+
+        while (checkpoint.generation < generations && checkpoint.stale < patience) {
+            int generation = checkpoint.generation + 1;
+            // Seeds depend only on the run's seed and the generation, so a resumed run plays the same games
+            long generationSeed = Seeds.mix(checkpoint.seed + ((long) generation << 32));
+            SplittableRandom rng = new SplittableRandom(generationSeed);
+            Entry winner = optimiser.runGeneration(checkpoint.best, numVariants, games, Seeds.mix(generationSeed), rng);
+            boolean improved = winner.variant != checkpoint.best;
+            checkpoint.generation = generation;
+            checkpoint.stale = improved ? 0 : checkpoint.stale + 1;
+            checkpoint.best = winner.variant;
+            checkpoint.cost = winner.cost;
+            System.out.println("Generation "+generation+(improved ? ": new best, " : ": kept, ")
+                    +winner.metrics+String.format(", cost %.4f", winner.cost)
+                    +" ("+optimiser.getGamesPlayed()+" games in "+((System.nanoTime() - start)/1000000)+" ms)");
+            try {
+                checkpoint.write(checkpointPath);
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: couldn't write checkpoint "+checkpointFile+": "+e.getMessage());
+            }
+        }
+        optimiser.shutdown();
+
+        System.out.println((checkpoint.stale >= patience)
+                ? "Stopped after "+patience+" generations without improvement."
+                : "Stopped after "+checkpoint.generation+" generations.");
+        System.out.print(LetterDistributionFinder.formatDistribution(checkpoint.best.distribution));
+        System.out.print(formatBonusValues(checkpoint.best.bonusValues));
+    }
+}
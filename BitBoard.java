@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+/*
+    Occupancy of a Board as bitboards: for each direction, one long per file
+    with bit pos set where that file holds a tile. A file is at most
+    2 * MAX_RADIUS + 1 = 63 cells, so every file of every Geometry fits in
+    one long, and bits outside a file's cells are always clear.
+
+    Neighbours along a file are shifts by one. Across files the layout is
+    the same in all three directions: the cell at (file, pos) touches pos
+    and pos + 1 in file + 1, and pos - 1 and pos in file - 1. So the anchors
+    of a whole file are six shifts and a mask, and the ends of the run of
+    tiles through a cell are a leading or trailing zero count.
+
+    Board keeps one current as tiles are placed and removed; copying it is
+    3 * width longs. Letters stay in the board's packed cells.
+*/
+public class BitBoard {
+    private static final Board.Direction[] DIRECTIONS = Board.Direction.values();
+
+    private Board.Geometry geometry;
+    private long[][] files; // [direction][file]
+
+    public BitBoard(Board.Geometry geometry) {
+        this.geometry = geometry;
+        files = new long[DIRECTIONS.length][geometry.getWidth()];
+    }
+
+    // Copies another bitboard of the same geometry
+    public void copyFrom(BitBoard other) {
+        if (other.geometry != geometry) {
+            throw new IllegalArgumentException("Bitboards are for different geometries");
+        }
+        for (int d = 0; d < files.length; d++) {
+            System.arraycopy(other.files[d], 0, files[d], 0, files[d].length);
+        }
+    }
+
+    public void clear() {
+        for (long[] dirFiles : files) {
+            Arrays.fill(dirFiles, 0L);
+        }
+    }
+
+    public void set(int index) {
+        int col = geometry.getCol(index);
+        int row = geometry.getRow(index);
+        for (Board.Direction direction : DIRECTIONS) {
+            files[direction.ordinal()][geometry.getFile(direction, col, row)] |= 1L << geometry.getPos(direction, col, row);
+        }
+    }
+
+    public void clear(int index) {
+        int col = geometry.getCol(index);
+        int row = geometry.getRow(index);
+        for (Board.Direction direction : DIRECTIONS) {
+            files[direction.ordinal()][geometry.getFile(direction, col, row)] &= ~(1L << geometry.getPos(direction, col, row));
+        }
+    }
+
+    // Tiles of one file, bit pos set for each; 0 for files off the board
+    public long getFile(Board.Direction direction, int file) {
+        long[] dirFiles = files[direction.ordinal()];
+        return (file < 0 || file >= dirFiles.length) ? 0L : dirFiles[file];
+    }
+
+    // Bit pos set for each cell of the file
+    public long getCells(Board.Direction direction, int file) {
+        int length = geometry.getLine(direction, file).length;
+        return ((1L << length) - 1) << geometry.getLineStart(direction, file);
+    }
+
+    // Empty cells of the file next to a tile in any direction, as Board.isAnchor
+    public long getAnchors(Board.Direction direction, int file) {
+        long tiles = getFile(direction, file);
+        long above = getFile(direction, file + 1);
+        long below = getFile(direction, file - 1);
+        long touched = (tiles << 1) | (tiles >>> 1) | above | (above >>> 1) | below | (below << 1);
+        if (touched == 0) {
+            return 0L;
+        }
+        return touched & ~tiles & getCells(direction, file);
+    }
+
+    // First pos of the run of tiles that ends just before pos (pos itself if there is none)
+    public int getRunStart(Board.Direction direction, int file, int pos) {
+        long gaps = ~getFile(direction, file) & ((1L << pos) - 1);
+        return 64 - Long.numberOfLeadingZeros(gaps);
+    }
+
+    // Pos just past the run of tiles that starts just after pos (pos + 1 if there is none)
+    public int getRunEnd(Board.Direction direction, int file, int pos) {
+        return pos + 1 + Long.numberOfTrailingZeros(~(getFile(direction, file) >>> (pos + 1)));
+    }
+}
@@ -1,8 +1,12 @@
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public class Board {
-    public static final int BOARD_WIDTH = 15;
+    public static final int STANDARD_RADIUS = 7;
+    public static final int BOARD_WIDTH = 2 * STANDARD_RADIUS + 1; // Of the standard board
+    public static final int MAX_RADIUS = 31; // Move keeps a line's placed tiles in a long
 
     public enum Direction {
         RISING, FALLING, DOWN
@@ -37,8 +41,9 @@ public class Board {
             return this.row;
         }
 
+        // File along FALLING on the standard board; Geometry.getFile works for any radius
         public int getDia() {
-            return (BOARD_WIDTH/2) + this.col - this.row;
+            return STANDARD_RADIUS + this.col - this.row;
         }
 
         public void setCol(int col) {
@@ -87,10 +92,10 @@ public class Board {
             this.length = length;
         }
 
+        // From file and pos on the standard board
         public Strand(Direction direction, int file, int minPos, int maxPos) {
-            int[] startCoords = getColRowFromFilePos(direction, file, minPos);
-            this.startCol = startCoords[0];
-            this.startRow = startCoords[1];
+            this.startCol = getColFromFilePos(direction, file, minPos);
+            this.startRow = getRowFromFilePos(direction, file, minPos);
             this.direction = direction;
             this.length = 1 + maxPos - minPos;
         }
@@ -111,6 +116,18 @@ public class Board {
             return this.length;
         }
 
+        public int getCol(int index) {
+            return startCol + index * colStep(direction);
+        }
+
+        public int getRow(int index) {
+            return startRow + index * rowStep(direction);
+        }
+
+        public int getCell(int index) {
+            return Board.getCell(getCol(index), getRow(index));
+        }
+
         public int[] getCoords() {
             int[] coords = new int[2 * length];
             int col = startCol;
@@ -136,7 +153,311 @@ public class Board {
         }
     }
 
-    public static final char BLK = '?'; // Blank
+    /*
+        Shape of a hexagonal board of a given radius: every cell at most
+        radius steps from the centre. Cells keep (col, row) coordinates on a
+        square grid 2 * radius + 1 wide, where (col, row) exists when
+        |col - row| <= radius, which are axial coordinates shifted so the
+        centre is (radius, radius). Cells are stored packed row by row as
+        indices 0 to getNumCells() - 1, with no slots for the missing
+        corners.
+
+        Everything that depends only on the shape is built here once per
+        radius and shared by all boards of that size: the neighbour of each
+        cell along each direction, the cells of every file, the default
+        bonus layout and the Zobrist keys.
+    */
+    public static class Geometry {
+        private static final Geometry[] CACHE = new Geometry[MAX_RADIUS + 1];
+
+        private int radius;
+        private int width;
+        private int numCells;
+        private int[] rowStart; // Index of the first cell of each row
+        private int[] rowFirstCol;
+        private int[] cellCols;
+        private int[] cellRows;
+        private int[][] next; // [direction][index]: the next cell along direction, or -1 off the board
+        private int[][] prev;
+        private int[][][] lines; // [direction][file]: its cells in order of increasing pos
+        private int[][] lineStarts;
+        private int center;
+        private char[] bonusValues;
+        private long[] zobristKeys; // NUM_TILE_KEYS per cell
+
+        public static Geometry of(int radius) {
+            if (radius < 1 || radius > MAX_RADIUS) {
+                throw new IllegalArgumentException("Board radius must be 1 to "+MAX_RADIUS);
+            }
+            if (radius == STANDARD_RADIUS) {
+                return STANDARD;
+            }
+            synchronized (CACHE) {
+                if (CACHE[radius] == null) {
+                    CACHE[radius] = new Geometry(radius);
+                }
+                return CACHE[radius];
+            }
+        }
+
+        private Geometry(int radius) {
+            this.radius = radius;
+            this.width = 2 * radius + 1;
+            rowStart = new int[width];
+            rowFirstCol = new int[width];
+            for (int row = 0; row < width; row++) {
+                rowStart[row] = numCells;
+                rowFirstCol[row] = Math.max(0, row - radius);
+                numCells += Math.min(width - 1, row + radius) - rowFirstCol[row] + 1;
+            }
+            cellCols = new int[numCells];
+            cellRows = new int[numCells];
+            for (int row = 0; row < width; row++) {
+                for (int col = 0; col < width; col++) {
+                    int index = getIndex(col, row);
+                    if (index >= 0) {
+                        cellCols[index] = col;
+                        cellRows[index] = row;
+                    }
+                }
+            }
+            center = getIndex(radius, radius);
+
+            int numDirections = Direction.values().length;
+            next = new int[numDirections][numCells];
+            prev = new int[numDirections][numCells];
+            lines = new int[numDirections][width][];
+            lineStarts = new int[numDirections][width];
+            int[] buffer = new int[width];
+            for (Direction direction : Direction.values()) {
+                int d = direction.ordinal();
+                for (int index = 0; index < numCells; index++) {
+                    next[d][index] = getIndex(cellCols[index] + colStep(direction), cellRows[index] + rowStep(direction));
+                    prev[d][index] = getIndex(cellCols[index] - colStep(direction), cellRows[index] - rowStep(direction));
+                }
+                for (int file = 0; file < width; file++) {
+                    int length = 0;
+                    int start = -1;
+                    for (int pos = 0; pos < width; pos++) {
+                        int index = getIndexFromFilePos(direction, file, pos);
+                        if (index == -1) continue;
+                        if (start == -1) start = pos;
+                        buffer[length++] = index;
+                    }
+                    lines[d][file] = Arrays.copyOf(buffer, length);
+                    lineStarts[d][file] = start;
+                }
+            }
+
+            generateBonusValues();
+            // Fixed seeds, so hashes are the same in every run
+            SplittableRandom keyRng = new SplittableRandom(0x5CAB81E5L + radius - STANDARD_RADIUS);
+            zobristKeys = new long[numCells * NUM_TILE_KEYS];
+            for (int i = 0; i < zobristKeys.length; i++) {
+                zobristKeys[i] = keyRng.nextLong();
+            }
+        }
+
+        /*
+            The standard layout with every premium moved out from the centre
+            in proportion to the radius, to the nearest cell. Premiums keep
+            their places relative to the edges, so a radius of
+            STANDARD_RADIUS gives the standard layout itself; on bigger boards
+            they are further apart. Each one is copied to every image of its
+            cell under the layout's symmetries (turns of 120 degrees and
+            reflection in the long diagonal), so ties in the rounding can't
+            make the result lopsided. Where two land on one cell the bigger
+            one wins.
+        */
+        private void generateBonusValues() {
+            bonusValues = new char[numCells];
+            Arrays.fill(bonusValues, NBS);
+            double scale = (double) radius / STANDARD_RADIUS;
+            for (int row = 0; row < BONUS_TEMPLATE.length; row++) {
+                int firstCol = Math.max(0, row - STANDARD_RADIUS);
+                for (int i = 0; i < BONUS_TEMPLATE[row].length(); i++) {
+                    char bonus = BONUS_TEMPLATE[row].charAt(i);
+                    if (bonus == NBS) continue;
+                    long cube = nearestCell((firstCol + i - STANDARD_RADIUS) * scale, (row - STANDARD_RADIUS) * scale);
+                    int q = (int) (cube >> 32);
+                    int r = (int) cube;
+                    for (int turn = 0; turn < 3; turn++) {
+                        placeBonus(q, r, bonus);
+                        placeBonus(r, q, bonus);
+                        int t = q;
+                        q = -r;
+                        r = t - r;
+                    }
+                }
+            }
+        }
+
+        private void placeBonus(int q, int r, char bonus) {
+            int index = getIndex(radius + q, radius + r);
+            if (index >= 0 && bonus > bonusValues[index]) {
+                bonusValues[index] = bonus;
+            }
+        }
+
+        /*
+            Cell nearest to a point given as offsets from the centre in col
+            and row units, returned as the col offset in the high int and the
+            row offset in the low one. Rounds in cube coordinates
+            (col, row - col, -row), fixing up whichever coordinate moved
+            furthest.
+        */
+        private static long nearestCell(double q, double r) {
+            double x = q;
+            double y = r - q;
+            double z = -r;
+            long rx = Math.round(x);
+            long ry = Math.round(y);
+            long rz = Math.round(z);
+            double dx = Math.abs(rx - x);
+            double dy = Math.abs(ry - y);
+            double dz = Math.abs(rz - z);
+            if (dx > dy && dx > dz) {
+                rx = -ry - rz;
+            }
+            else if (dy > dz) {
+                ry = -rx - rz;
+            }
+            else {
+                rz = -rx - ry;
+            }
+            return (rx << 32) | ((-rz) & 0xFFFFFFFFL);
+        }
+
+        public int getRadius() {
+            return radius;
+        }
+
+        // Columns and rows both run from 0 to getWidth() - 1
+        public int getWidth() {
+            return width;
+        }
+
+        public int getNumCells() {
+            return numCells;
+        }
+
+        public boolean contains(int col, int row) {
+            return col >= 0 && col < width && row >= 0 && row < width
+                    && col - row <= radius && row - col <= radius;
+        }
+
+        // Packed index of (col, row), or -1 if there is no such cell
+        public int getIndex(int col, int row) {
+            if (!contains(col, row)) {
+                return -1;
+            }
+            return rowStart[row] + col - rowFirstCol[row];
+        }
+
+        public int getCol(int index) {
+            return cellCols[index];
+        }
+
+        public int getRow(int index) {
+            return cellRows[index];
+        }
+
+        // The neighbours of a cell along a direction, or -1 past the edge
+        public int getNext(Direction direction, int index) {
+            return next[direction.ordinal()][index];
+        }
+
+        public int getPrev(Direction direction, int index) {
+            return prev[direction.ordinal()][index];
+        }
+
+        public int getCenter() {
+            return center;
+        }
+
+        /*
+            Files and positions: RISING files are rows and DOWN files are
+            columns; FALLING files are numbered radius + col - row. Position
+            along a file is the column, except along DOWN where it is the row.
+        */
+        public int getFile(Direction direction, int col, int row) {
+            switch (direction) {
+                case RISING:
+                    return row;
+                case FALLING:
+                    return radius + col - row;
+                default:
+                    return col;
+            }
+        }
+
+        public int getPos(Direction direction, int col, int row) {
+            return (direction == Direction.DOWN) ? row : col;
+        }
+
+        public int getColFromFilePos(Direction direction, int file, int pos) {
+            return (direction == Direction.DOWN) ? file : pos;
+        }
+
+        public int getRowFromFilePos(Direction direction, int file, int pos) {
+            switch (direction) {
+                case RISING:
+                    return file;
+                case FALLING:
+                    return radius + pos - file;
+                default:
+                    return pos;
+            }
+        }
+
+        // Cell at (file, pos), or -1 if there is none
+        public int getIndexFromFilePos(Direction direction, int file, int pos) {
+            return getIndex(getColFromFilePos(direction, file, pos), getRowFromFilePos(direction, file, pos));
+        }
+
+        /*
+            Cells of each file in order of increasing pos. The hexagon is
+            convex, so a file is one contiguous run starting at
+            getLineStart(). The arrays are shared; callers must not modify
+            them.
+        */
+        public int[] getLine(Direction direction, int file) {
+            return lines[direction.ordinal()][file];
+        }
+
+        public int getLineStart(Direction direction, int file) {
+            return lineStarts[direction.ordinal()][file];
+        }
+
+        // Default bonus of a cell, VOI if there is no such cell
+        public char getBonusValue(int col, int row) {
+            int index = getIndex(col, row);
+            return (index < 0) ? VOI : bonusValues[index];
+        }
+
+        // The default layout as a width x width grid indexed [row][col], VOI off the board
+        public char[][] getBonusValues() {
+            return unpack(bonusValues);
+        }
+
+        private char[][] unpack(char[] packed) {
+            char[][] values = new char[width][width];
+            for (int row = 0; row < width; row++) {
+                for (int col = 0; col < width; col++) {
+                    int index = getIndex(col, row);
+                    values[row][col] = (index < 0) ? VOI : packed[index];
+                }
+            }
+            return values;
+        }
+
+        public long zobristKey(int index, char data) {
+            int key = (data >= 'a') ? Lexicon.NUM_LETTERS + (data - 'a') : data - 'A';
+            return zobristKeys[index * NUM_TILE_KEYS + key];
+        }
+    }
+
+    public static final char BLK = '?'; // Blank (on the board a blank is its letter in lower case)
     public static final char VOI = '*'; // No hexagon exists
     public static final char EMT = '-'; // No tile exists
     public static final char NBS = '0'; // No bonus
@@ -144,184 +465,524 @@ public class Board {
     public static final char DWS = '2'; // Double word score
     public static final char TLS = '3'; // Triple letter score
     public static final char TWS = '4'; // Triple word score
-    private static final char[][] BONUS_VALUES = {
-        { TWS, NBS, NBS, NBS, NBS, DLS, NBS, TWS, VOI, VOI, VOI, VOI, VOI, VOI, VOI },
-        { NBS, NBS, DLS, NBS, DWS, NBS, NBS, NBS, NBS, VOI, VOI, VOI, VOI, VOI, VOI },
-        { NBS, DLS, NBS, NBS, NBS, NBS, TLS, NBS, NBS, DLS, VOI, VOI, VOI, VOI, VOI },
-        { NBS, NBS, NBS, TLS, NBS, DWS, NBS, NBS, TLS, NBS, NBS, VOI, VOI, VOI, VOI },
-        { NBS, DWS, NBS, NBS, NBS, NBS, NBS, DLS, NBS, NBS, DWS, NBS, VOI, VOI, VOI },
-        { DLS, NBS, NBS, DWS, NBS, NBS, DLS, NBS, NBS, DWS, NBS, NBS, NBS, VOI, VOI },
-        { NBS, NBS, TLS, NBS, NBS, DLS, NBS, NBS, DLS, NBS, NBS, NBS, DLS, NBS, VOI },
-        { TWS, NBS, NBS, NBS, DLS, NBS, NBS, DWS, NBS, NBS, NBS, TLS, NBS, NBS, TWS },
-        { VOI, NBS, NBS, TLS, NBS, NBS, DLS, NBS, NBS, DLS, NBS, NBS, NBS, DLS, NBS },
-        { VOI, VOI, DLS, NBS, NBS, DWS, NBS, NBS, DLS, NBS, NBS, DWS, NBS, NBS, NBS },
-        { VOI, VOI, VOI, NBS, DWS, NBS, NBS, NBS, NBS, NBS, DLS, NBS, NBS, DWS, NBS },
-        { VOI, VOI, VOI, VOI, NBS, NBS, NBS, TLS, NBS, DWS, NBS, NBS, TLS, NBS, NBS },
-        { VOI, VOI, VOI, VOI, VOI, NBS, DLS, NBS, NBS, NBS, NBS, TLS, NBS, NBS, DLS },
-        { VOI, VOI, VOI, VOI, VOI, VOI, NBS, NBS, DLS, NBS, DWS, NBS, NBS, NBS, NBS },
-        { VOI, VOI, VOI, VOI, VOI, VOI, VOI, TWS, NBS, NBS, NBS, NBS, DLS, NBS, TWS }
-    };
-    private static final char[][] BLANK_BOARD = {
-        { EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, VOI, VOI, VOI, VOI, VOI, VOI, VOI },
-        { EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, VOI, VOI, VOI, VOI, VOI, VOI },
-        { EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, VOI, VOI, VOI, VOI, VOI },
-        { EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, VOI, VOI, VOI, VOI },
-        { EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, VOI, VOI, VOI },
-        { EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, VOI, VOI },
-        { EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, VOI },
-        { EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT },
-        { VOI, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT },
-        { VOI, VOI, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT },
-        { VOI, VOI, VOI, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT },
-        { VOI, VOI, VOI, VOI, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT },
-        { VOI, VOI, VOI, VOI, VOI, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT },
-        { VOI, VOI, VOI, VOI, VOI, VOI, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT },
-        { VOI, VOI, VOI, VOI, VOI, VOI, VOI, EMT, EMT, EMT, EMT, EMT, EMT, EMT, EMT }
+    public static final int BINGO_BONUS = 50; // For playing a full rack
+    private static final int[] LETTER_VALUES =
+        { 1,3,3,2,1,4,2,4,1,8,5,1,3,1,1,3,10,1,1,1,1,4,4,8,4,10 };
+        //A,B,C,D,E,F,G,H,I,J,K,L,M,N,O,P,Q, R,S,T,U,V,W,X,Y,Z
+
+    /*
+        Bonuses of the standard board, one string per row holding only the
+        cells that exist, from the leftmost. Layouts for other radii are
+        generated from it (see Geometry).
+    */
+    private static final String[] BONUS_TEMPLATE = {
+        "40000104",
+        "001020000",
+        "0100003001",
+        "00030200300",
+        "020000010020",
+        "1002001002000",
+        "00300100100010",
+        "400010020003004",
+        "00300100100010",
+        "1002001002000",
+        "020000010020",
+        "00030200300",
+        "0100003001",
+        "001020000",
+        "40000104"
     };
 
-    public char[][] data;
+    /*
+        Zobrist keys, one per cell and tile (26 letters, then 26 blanks). A
+        board's hash is the XOR of the keys of its tiles, kept up to date by
+        placeTile and removeTile. Each Geometry holds the keys for its cells.
+    */
+    private static final int NUM_TILE_KEYS = 2 * Lexicon.NUM_LETTERS;
+
+    // Built directly rather than through Geometry.of, which would wait on its lock during class setup
+    private static final Geometry STANDARD = new Geometry(STANDARD_RADIUS);
+
+    // Set on a hook mask when the cell has tiles next to it along that direction
+    public static final int TOUCHED = 1 << Lexicon.NUM_LETTERS;
+
     public List<Tile> newTiles;
 
+    private Geometry geometry;
+    private char[] cells; // By packed index: EMT or a tile
+    private BitBoard bits; // The same tiles by file, for shift and mask queries
+
+    /*
+        Cross-check state, kept only when a lexicon is attached. For every
+        empty cell and direction, hooks holds the letters that would still
+        make a word along that direction (bits 0-25) plus TOUCHED. Placing or
+        removing a tile only changes that cell and the two empty cells at the
+        ends of each run through it, so at most nine cells are refreshed.
+    */
+    private Lexicon lexicon;
+    private int[][] hooks; // [direction][index]
+    private char[] bonusValues; // By packed index; the geometry's own until replaced, never written
+    private int tileCount;
+    private long hash;
+    private char[] prefixBuffer;
+    private char[] suffixBuffer;
+    private char[] wordBuffer;
+
     public Board() {
-        data = BLANK_BOARD;
+        this(STANDARD);
+    }
+
+    public Board(int radius) {
+        this(Geometry.of(radius));
+    }
+
+    public Board(Lexicon lexicon) {
+        this();
+        setLexicon(lexicon);
+    }
+
+    public Board(Lexicon lexicon, int radius) {
+        this(radius);
+        setLexicon(lexicon);
     }
 
     public Board(Board oldBoard) {
-        for (int row = 0; row < BOARD_WIDTH; row++) {
-            for (int col = 0; col < BOARD_WIDTH; col++) {
-                this.data[row][col] = oldBoard.data[row][col];
-            }
+        copyFrom(oldBoard);
+    }
+
+    private Board(Geometry geometry) {
+        setGeometry(geometry);
+        Arrays.fill(cells, EMT);
+        bonusValues = geometry.bonusValues;
+    }
+
+    private void setGeometry(Geometry geometry) {
+        this.geometry = geometry;
+        cells = new char[geometry.numCells];
+        bits = new BitBoard(geometry);
+        wordBuffer = new char[geometry.width];
+        hooks = null;
+    }
+
+    /*
+        Makes this board a copy of another, reusing this board's arrays where
+        it can so simulations can reset a scratch board without allocating.
+    */
+    public void copyFrom(Board oldBoard) {
+        if (geometry != oldBoard.geometry) {
+            setGeometry(oldBoard.geometry);
+        }
+        System.arraycopy(oldBoard.cells, 0, cells, 0, cells.length);
+        bits.copyFrom(oldBoard.bits);
+        tileCount = oldBoard.tileCount;
+        hash = oldBoard.hash;
+        lexicon = oldBoard.lexicon;
+        bonusValues = oldBoard.bonusValues;
+        if (oldBoard.hooks == null) {
+            hooks = null;
+            return;
         }
+        if (hooks == null) {
+            hooks = new int[oldBoard.hooks.length][geometry.numCells];
+            prefixBuffer = new char[geometry.width];
+            suffixBuffer = new char[geometry.width];
+        }
+        for (int d = 0; d < hooks.length; d++) {
+            System.arraycopy(oldBoard.hooks[d], 0, hooks[d], 0, geometry.numCells);
+        }
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public BitBoard getBitBoard() {
+        return bits;
+    }
+
+    public static int colStep(Direction direction) {
+        return (direction == Direction.DOWN) ? 0 : 1;
+    }
+
+    public static int rowStep(Direction direction) {
+        return (direction == Direction.RISING) ? 0 : 1;
     }
 
+    // True for placed tiles, including blanks (lower case)
+    public static boolean isLetter(char data) {
+        return data >= 'A';
+    }
+
+    /*
+        The static helpers below describe the standard board; a board of any
+        other radius answers the same questions through its Geometry.
+    */
     public static int[] getColRowFromFilePos(Direction direction, int file, int pos) {
         int[] coords = new int[2];
-        int col = -1;
-        int row = -1;
-        switch (direction) {
-            case RISING:
-                col = pos;
-                row = file;
-                break;
-            case FALLING:
-                col = pos;
-                row = (BOARD_WIDTH/2) + pos - file;
-                break;
-            case DOWN:
-                col = file;
-                row = pos;
-                break;
-        }
-        coords[0] = col;
-        coords[1] = row;
+        coords[0] = getColFromFilePos(direction, file, pos);
+        coords[1] = getRowFromFilePos(direction, file, pos);
         return coords;
     }
 
+    public static int getColFromFilePos(Direction direction, int file, int pos) {
+        return STANDARD.getColFromFilePos(direction, file, pos);
+    }
+
+    public static int getRowFromFilePos(Direction direction, int file, int pos) {
+        return STANDARD.getRowFromFilePos(direction, file, pos);
+    }
+
+    /*
+        Packed cell index (see Geometry). Cells are plain ints so hot loops
+        can walk files without allocating coordinate pairs. -1 if (col, row)
+        is not on the board.
+    */
+    public static int getCell(int col, int row) {
+        return STANDARD.getIndex(col, row);
+    }
+
+    public static int getCellCol(int cell) {
+        return STANDARD.getCol(cell);
+    }
+
+    public static int getCellRow(int cell) {
+        return STANDARD.getRow(cell);
+    }
+
+    // Cell at (file, pos), or -1 if that is off the board
+    public static int getCellFromFilePos(Direction direction, int file, int pos) {
+        return STANDARD.getIndexFromFilePos(direction, file, pos);
+    }
+
+    public static int[] getLine(Direction direction, int file) {
+        return STANDARD.getLine(direction, file);
+    }
+
+    public static int getLineStart(Direction direction, int file) {
+        return STANDARD.getLineStart(direction, file);
+    }
+
+    // By packed index on this board's geometry
+    public char getCharAt(int cell) {
+        return this.cells[cell];
+    }
+
+    // Returns VOI for positions off the board
     public char getCharAt(int col, int row) {
-        return this.data[row][col];
+        int index = geometry.getIndex(col, row);
+        return (index < 0) ? VOI : this.cells[index];
     }
 
+    // Returns VOI for positions off the board, so runs can be scanned without bounds checks
     public char getCharAt(Direction direction, int file, int pos) {
-        int[] coords = getColRowFromFilePos(direction, file, pos);
-        return this.data[coords[1]][coords[0]];
+        int index = geometry.getIndexFromFilePos(direction, file, pos);
+        return (index < 0) ? VOI : this.cells[index];
     }
 
     public boolean isEmpty(int col, int row) {
-        if (col < 0 || col >= BOARD_WIDTH) {
-            return false;
-        }
-        if (row < 0 || row >= BOARD_WIDTH) {
-            return false;
-        }
-        return (this.data[row][col] == EMT);
+        int index = geometry.getIndex(col, row);
+        return index >= 0 && this.cells[index] == EMT;
     }
 
     public boolean isValid(int col, int row) {
-        if (col < 0 || col >= BOARD_WIDTH) {
-            return false;
-        }
-        if (row < 0 || row >= BOARD_WIDTH) {
-            return false;
-        }
-        return (this.data[row][col] != VOI);
+        return geometry.contains(col, row);
     }
 
     public boolean checkStrand(Strand strand) {
-        int[] coords = strand.getCoords();
-        for (int i = 0; i < coords.length/2; i++) {
-            if (this.data[2*i + 1][2*i] < 'A') return false;
+        for (int i = 0; i < strand.getLength(); i++) {
+            if (!isLetter(getCharAt(strand.getCol(i), strand.getRow(i)))) return false;
         }
         return true;
     }
 
     /*
         Finds all Strands that have been created by the play and returns a List
-        of them. If the play is invalid, a null List is returned instead.
+        of them, main strand first. If the play is invalid, a null List is
+        returned instead. When a lexicon is attached every strand must also be
+        a word. The new tiles are not placed; only the files through them are
+        read, so the cost grows with the size of the play, not the board.
     */
-    /*
     public List<Strand> checkTilePlacement(List<Tile> newTiles) {
-        Board nextBoard = new Board(this);
-        Board freshBoard = new Board(); // Tracks placement of new tiles
-        for (Tile tile : newTiles) {
-            if (nextBoard.placeTile(tile) == false) {
+        if (newTiles == null || newTiles.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < newTiles.size(); i++) {
+            Tile tile = newTiles.get(i);
+            if (!isEmpty(tile.getCol(), tile.getRow()) || !isLetter(tile.getData())) {
                 return null;
             }
-            freshBoard.placeTile(tile);
+            for (int j = 0; j < i; j++) {
+                Tile other = newTiles.get(j);
+                if (other.getCol() == tile.getCol() && other.getRow() == tile.getRow()) {
+                    return null;
+                }
+            }
         }
 
-        List<Strand> strands = new ArrayList<Strand>();
-
         Direction direction = null;
-        int file; // row index, col index, or dia index
+        Tile first = newTiles.get(0);
 
         // Finds direction of first two tiles
         if (newTiles.size() >= 2) {
-            Tile first = newTiles.get(0);
             Tile second = newTiles.get(1);
             if (first.getRow() == second.getRow()) {
                 direction = Direction.RISING;
-                file = first.getRow();
             }
-            else if (first.getDia() == second.getDia()) {
+            else if (first.getCol() - first.getRow() == second.getCol() - second.getRow()) {
                 direction = Direction.FALLING;
-                file = first.getDia();
             }
             else if (first.getCol() == second.getCol()) {
                 direction = Direction.DOWN;
-                file = first.getCol();
             }
             else return null; // Tiles do not make a line, so play is invalid
+        }
+        else {
+            // A lone tile reads along the first direction it touches a tile in
+            for (Direction dir : Direction.values()) {
+                int file = geometry.getFile(dir, first.getCol(), first.getRow());
+                int pos = geometry.getPos(dir, first.getCol(), first.getRow());
+                if (isLetter(getCharAt(dir, file, pos - 1)) || isLetter(getCharAt(dir, file, pos + 1))) {
+                    direction = dir;
+                    break;
+                }
+            }
+            if (direction == null) return null; // A single letter is not a word
+        }
 
-            int minPos = first.getPos(direction);
-            Tile minTile = first;
-            int maxPos = minPos;
-            Tile maxTile = minTile;
-            for (Tile tile : newTiles) {
-                if (tile.getFile(direction) != file) return null; // Tiles do not line up, so play is invalid
-                int pos = tile.getPos(direction);
-                if (pos > maxPos) {
-                    maxPos = pos;
-                    maxTile = tile;
+        int file = geometry.getFile(direction, first.getCol(), first.getRow());
+        int minPos = geometry.getPos(direction, first.getCol(), first.getRow());
+        int maxPos = minPos;
+        for (Tile tile : newTiles) {
+            if (geometry.getFile(direction, tile.getCol(), tile.getRow()) != file) return null; // Tiles do not line up, so play is invalid
+            int pos = geometry.getPos(direction, tile.getCol(), tile.getRow());
+            if (pos > maxPos) {
+                maxPos = pos;
+            }
+            else if (pos < minPos) {
+                minPos = pos;
+            }
+        }
+
+        // Any gap between the new tiles must already hold a tile
+        for (int pos = minPos; pos <= maxPos; pos++) {
+            char data = getCharAt(direction, file, pos);
+            if (data == EMT) {
+                if (findTile(newTiles, geometry.getColFromFilePos(direction, file, pos),
+                        geometry.getRowFromFilePos(direction, file, pos)) == null) {
+                    return null;
+                }
+            }
+            else if (!isLetter(data)) {
+                return null;
+            }
+        }
+
+        // Find start and end of Strand formed by all tiles
+        while (isLetter(getCharAt(direction, file, minPos - 1))) {
+            minPos--;
+        }
+        while (isLetter(getCharAt(direction, file, maxPos + 1))) {
+            maxPos++;
+        }
+
+        List<Strand> strands = new ArrayList<Strand>();
+        strands.add(strand(direction, file, minPos, maxPos));
+        boolean connected = (1 + maxPos - minPos) > newTiles.size();
+
+        // Add the cross strands each new tile makes along the other directions
+        for (Tile tile : newTiles) {
+            for (Direction dir : Direction.values()) {
+                if (dir == direction) continue;
+                int crossFile = geometry.getFile(dir, tile.getCol(), tile.getRow());
+                int lo = geometry.getPos(dir, tile.getCol(), tile.getRow());
+                int hi = lo;
+                while (isLetter(getCharAt(dir, crossFile, lo - 1))) {
+                    lo--;
+                }
+                while (isLetter(getCharAt(dir, crossFile, hi + 1))) {
+                    hi++;
                 }
-                else if (pos < minPos) {
-                    minPos = pos;
-                    minTile = tile;
+                if (hi > lo) {
+                    strands.add(strand(dir, crossFile, lo, hi));
+                    connected = true;
                 }
             }
+        }
+
+        // The first play must cover the centre, later plays must touch a tile
+        if (tileCount == 0) {
+            int radius = geometry.radius;
+            connected = (findTile(newTiles, radius, radius) != null);
+        }
+        if (!connected) {
+            return null;
+        }
 
-            // Find start to Strand formed by all tiles
-            while (nextBoard.getCharAt(direction, file, --minPos) >= 'A') {}
-            minPos++;
+        if (lexicon != null) {
+            for (Strand strand : strands) {
+                if (!isWord(strand, newTiles)) return null;
+            }
+        }
+        return strands;
+    }
 
-            // Find end to Strand formed by all Tiles
-            while (nextBoard.getCharAt(direction, file, ++maxPos) >= 'A') {}
-            maxPos--;
+    private Strand strand(Direction direction, int file, int minPos, int maxPos) {
+        return new Strand(geometry.getColFromFilePos(direction, file, minPos),
+                geometry.getRowFromFilePos(direction, file, minPos), direction, 1 + maxPos - minPos);
+    }
 
-            // Add the strand formed by all tiles and affixes
-            Strand coreStrand = new Strand(direction, file, minPos, maxPos);
+    /*
+        Validates and scores a play in one step. Returns -1 for an invalid
+        play.
+    */
+    public int scoreTilePlacement(List<Tile> newTiles) {
+        List<Strand> strands = checkTilePlacement(newTiles);
+        if (strands == null) {
+            return -1;
+        }
+        int score = 0;
+        for (Strand strand : strands) {
+            score += scoreStrand(strand, newTiles);
         }
+        if (newTiles.size() == Game.NUM_TILES_IN_RACK) {
+            score += BINGO_BONUS;
+        }
+        return score;
     }
+
+    /*
+        Scores a play from MoveGenerator, which is already known to be legal.
+        Nothing is allocated: the main word is walked through the neighbour
+        table from its first cell, and each cross word is one run scan from
+        the placed tile.
     */
+    public int scoreMove(Move move) {
+        Direction direction = move.getDirection();
+        int[] next = geometry.next[direction.ordinal()];
+        char[] word = move.getWord();
+        int mainSum = 0;
+        int wordMultiplier = 1;
+        int crossTotal = 0;
+        int index = geometry.getIndex(move.getStartCol(), move.getStartRow());
+        for (int i = 0; i < word.length; i++, index = next[index]) {
+            int value = getLetterValue(word[i]);
+            if (!move.isPlaced(i)) {
+                mainSum += value;
+                continue;
+            }
+            int letterMultiplier = letterMultiplier(bonusValues[index]);
+            int cellWordMultiplier = wordMultiplier(bonusValues[index]);
+            mainSum += value * letterMultiplier;
+            wordMultiplier *= cellWordMultiplier;
+            for (Direction dir : Direction.values()) {
+                if (dir == direction) continue;
+                int crossSum = getCrossSum(dir, index);
+                if (crossSum >= 0) {
+                    crossTotal += (crossSum + value * letterMultiplier) * cellWordMultiplier;
+                }
+            }
+        }
+        int score = mainSum * wordMultiplier + crossTotal;
+        if (move.getNumTilesPlaced() == Game.NUM_TILES_IN_RACK) {
+            score += BINGO_BONUS;
+        }
+        return score;
+    }
+
+    // Sum of tile values next to an empty cell along a direction, or -1 if there are none
+    public int getCrossSum(Direction direction, int index) {
+        int[] next = geometry.next[direction.ordinal()];
+        int[] prev = geometry.prev[direction.ordinal()];
+        int sum = 0;
+        boolean found = false;
+        for (int i = prev[index]; i >= 0 && isLetter(cells[i]); i = prev[i]) {
+            sum += getLetterValue(cells[i]);
+            found = true;
+        }
+        for (int i = next[index]; i >= 0 && isLetter(cells[i]); i = next[i]) {
+            sum += getLetterValue(cells[i]);
+            found = true;
+        }
+        return found ? sum : -1;
+    }
+
+    private int scoreStrand(Strand strand, List<Tile> newTiles) {
+        int sum = 0;
+        int wordMultiplier = 1;
+        for (int i = 0; i < strand.getLength(); i++) {
+            int col = strand.getCol(i);
+            int row = strand.getRow(i);
+            int index = geometry.getIndex(col, row);
+            char data = this.cells[index];
+            if (isLetter(data)) {
+                sum += getLetterValue(data);
+            }
+            else {
+                sum += getLetterValue(findTile(newTiles, col, row).getData()) * letterMultiplier(bonusValues[index]);
+                wordMultiplier *= wordMultiplier(bonusValues[index]);
+            }
+        }
+        return sum * wordMultiplier;
+    }
+
+    private boolean isWord(Strand strand, List<Tile> newTiles) {
+        for (int i = 0; i < strand.getLength(); i++) {
+            int col = strand.getCol(i);
+            int row = strand.getRow(i);
+            char data = getCharAt(col, row);
+            wordBuffer[i] = isLetter(data) ? data : findTile(newTiles, col, row).getData();
+        }
+        return lexicon.contains(wordBuffer, 0, strand.getLength());
+    }
+
+    private static Tile findTile(List<Tile> tiles, int col, int row) {
+        for (int i = 0; i < tiles.size(); i++) {
+            Tile tile = tiles.get(i);
+            if (tile.getCol() == col && tile.getRow() == row) {
+                return tile;
+            }
+        }
+        return null;
+    }
+
+    // Blanks (lower case) are worth nothing
+    public static int getLetterValue(char data) {
+        if (data >= 'A' && data <= 'Z') {
+            return LETTER_VALUES[data - 'A'];
+        }
+        return 0;
+    }
+
+    // Multipliers of the standard layout; a board scores with its own
+    public static int getLetterMultiplier(int col, int row) {
+        return letterMultiplier(STANDARD.getBonusValue(col, row));
+    }
+
+    public static int getWordMultiplier(int col, int row) {
+        return wordMultiplier(STANDARD.getBonusValue(col, row));
+    }
+
+    private static int letterMultiplier(char bonus) {
+        switch (bonus) {
+            case DLS:
+                return 2;
+            case TLS:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    private static int wordMultiplier(char bonus) {
+        switch (bonus) {
+            case DWS:
+                return 2;
+            case TWS:
+                return 3;
+            default:
+                return 1;
+        }
+    }
 
     public void addTile(char data, int col, int row) {
         Tile tile = new Tile(data, col, row);
@@ -329,21 +990,235 @@ public class Board {
     }
 
     public boolean placeTile(Tile tile) {
-        if (tile.getRow() == -1 && tile.getCol() == -1) {
+        int index = geometry.getIndex(tile.getCol(), tile.getRow());
+        if (index < 0) {
             return false;
         }
-        if (data[tile.getRow()][tile.getCol()] == EMT) {
-            data[tile.getRow()][tile.getCol()] = tile.getData();
+        if (cells[index] == EMT) {
+            cells[index] = tile.getData();
+            bits.set(index);
+            tileCount++;
+            hash ^= geometry.zobristKey(index, tile.getData());
+            if (lexicon != null) {
+                updateHooksAround(index);
+            }
             return true;
         }
         else return false;
     }
 
+    /*
+        Takes a tile back off the board, the inverse of placeTile. Returns the
+        tile that was there, or EMT if the cell held none.
+    */
+    public char removeTile(int col, int row) {
+        int index = geometry.getIndex(col, row);
+        if (index < 0 || !isLetter(cells[index])) {
+            return EMT;
+        }
+        char removed = cells[index];
+        cells[index] = EMT;
+        bits.clear(index);
+        tileCount--;
+        hash ^= geometry.zobristKey(index, removed);
+        if (lexicon != null) {
+            updateHooksAround(index);
+        }
+        return removed;
+    }
+
     public void clearBoard() {
-        data = BLANK_BOARD;
+        Arrays.fill(cells, EMT);
+        bits.clear();
+        tileCount = 0;
+        hash = 0;
+        if (lexicon != null) {
+            setLexicon(lexicon);
+        }
+    }
+
+    public int getTileCount() {
+        return tileCount;
     }
 
+    public long getHash() {
+        return hash;
+    }
+
+    // Key of a tile on the standard board
+    public static long zobristKey(int col, int row, char data) {
+        return STANDARD.zobristKey(STANDARD.getIndex(col, row), data);
+    }
+
+    // Attaches a lexicon and rebuilds all cross-checks, the tile count and the hash from scratch
+    public void setLexicon(Lexicon lexicon) {
+        this.lexicon = lexicon;
+        int numCells = geometry.numCells;
+        hooks = new int[Direction.values().length][numCells];
+        prefixBuffer = new char[geometry.width];
+        suffixBuffer = new char[geometry.width];
+        tileCount = 0;
+        hash = 0;
+        for (int index = 0; index < numCells; index++) {
+            if (isLetter(cells[index])) {
+                tileCount++;
+                hash ^= geometry.zobristKey(index, cells[index]);
+            }
+        }
+        for (Direction direction : Direction.values()) {
+            for (int index = 0; index < numCells; index++) {
+                if (cells[index] == EMT) {
+                    hooks[direction.ordinal()][index] = computeHooks(direction, index);
+                }
+            }
+        }
+    }
+
+    public Lexicon getLexicon() {
+        return lexicon;
+    }
+
+    public int getHooks(Direction direction, int col, int row) {
+        return hooks[direction.ordinal()][geometry.getIndex(col, row)];
+    }
+
+    public int getHooks(Direction direction, int cell) {
+        return hooks[direction.ordinal()][cell];
+    }
+
+    /*
+        Letters that may be placed on an empty cell by a play along the given
+        direction: the cell must still form words along both other
+        directions. TOUCHED is set if either of those cross words exists.
+    */
+    public int getCrossCheck(Direction direction, int col, int row) {
+        return getCrossCheck(direction, geometry.getIndex(col, row));
+    }
+
+    public int getCrossCheck(Direction direction, int cell) {
+        int a;
+        int b;
+        switch (direction) {
+            case RISING:
+                a = hooks[Direction.FALLING.ordinal()][cell];
+                b = hooks[Direction.DOWN.ordinal()][cell];
+                break;
+            case FALLING:
+                a = hooks[Direction.RISING.ordinal()][cell];
+                b = hooks[Direction.DOWN.ordinal()][cell];
+                break;
+            default:
+                a = hooks[Direction.RISING.ordinal()][cell];
+                b = hooks[Direction.FALLING.ordinal()][cell];
+                break;
+        }
+        return (a & b & Lexicon.ALL_LETTERS) | ((a | b) & TOUCHED);
+    }
+
+    // An empty cell next to at least one tile
+    public boolean isAnchor(int col, int row) {
+        return isAnchor(geometry.getIndex(col, row));
+    }
+
+    public boolean isAnchor(int cell) {
+        if (cells[cell] != EMT) return false;
+        return ((hooks[0][cell] | hooks[1][cell] | hooks[2][cell]) & TOUCHED) != 0;
+    }
+
+    private void updateHooksAround(int index) {
+        int col = geometry.cellCols[index];
+        int row = geometry.cellRows[index];
+        for (Direction direction : Direction.values()) {
+            int[] dirHooks = hooks[direction.ordinal()];
+            dirHooks[index] = (cells[index] == EMT) ? computeHooks(direction, index) : 0;
+
+            // The empty cells just past the runs of tiles on either side
+            int file = geometry.getFile(direction, col, row);
+            int pos = geometry.getPos(direction, col, row);
+            int i = geometry.getIndexFromFilePos(direction, file, bits.getRunStart(direction, file, pos) - 1);
+            if (i >= 0) {
+                dirHooks[i] = computeHooks(direction, i);
+            }
+            i = geometry.getIndexFromFilePos(direction, file, bits.getRunEnd(direction, file, pos));
+            if (i >= 0) {
+                dirHooks[i] = computeHooks(direction, i);
+            }
+        }
+    }
+
+    private int computeHooks(Direction direction, int index) {
+        int[] next = geometry.next[direction.ordinal()];
+        int[] prev = geometry.prev[direction.ordinal()];
+
+        // Walk to the start of the run before the cell, then copy it forwards
+        int start = 0;
+        int first = index;
+        while (prev[first] >= 0 && isLetter(cells[prev[first]])) {
+            first = prev[first];
+            start++;
+        }
+        for (int i = 0, j = first; i < start; i++, j = next[j]) {
+            prefixBuffer[i] = cells[j];
+        }
+
+        int end = 0;
+        for (int j = next[index]; j >= 0 && isLetter(cells[j]); j = next[j]) {
+            suffixBuffer[end++] = cells[j];
+        }
+
+        if (start == 0 && end == 0) {
+            return Lexicon.ALL_LETTERS;
+        }
+        return lexicon.hookMask(prefixBuffer, start, suffixBuffer, end) | TOUCHED;
+    }
+
+    // Bonus of the standard layout, VOI off the board
     public static char getBonusValue(int x, int y) {
-        return BONUS_VALUES[y][x];
+        return STANDARD.getBonusValue(x, y);
+    }
+
+    // Copy of the standard bonus layout, indexed [row][col]
+    public static char[][] getDefaultBonusValues() {
+        return STANDARD.getBonusValues();
+    }
+
+    // Bonus of a cell of this board's layout, by packed index
+    public char getBonusAt(int cell) {
+        return bonusValues[cell];
+    }
+
+    // This board's layout, indexed [row][col] with VOI off the board
+    public char[][] getBonusValues() {
+        return geometry.unpack(bonusValues);
+    }
+
+    /*
+        Scores plays on this board with another bonus layout, as when trying
+        out new layouts. The layout must have this board's shape: VOI in
+        exactly the cells that don't exist and one of the bonus codes
+        elsewhere.
+    */
+    public void setBonusValues(char[][] values) {
+        int width = geometry.width;
+        if (values.length != width) {
+            throw new IllegalArgumentException("Bonus layout needs "+width+" rows");
+        }
+        char[] packed = new char[geometry.numCells];
+        for (int row = 0; row < width; row++) {
+            if (values[row].length != width) {
+                throw new IllegalArgumentException("Bonus layout needs "+width+" columns");
+            }
+            for (int col = 0; col < width; col++) {
+                char bonus = values[row][col];
+                int index = geometry.getIndex(col, row);
+                if ((bonus == VOI) != (index < 0) || (bonus != VOI && (bonus < NBS || bonus > TWS))) {
+                    throw new IllegalArgumentException("Bad bonus '"+bonus+"' at "+col+","+row);
+                }
+                if (index >= 0) {
+                    packed[index] = bonus;
+                }
+            }
+        }
+        bonusValues = packed;
     }
 }
@@ -0,0 +1,581 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    Exact solver for two-player endgames. Once the bag is empty both racks
+    are known, so the rest of the game is a perfect-information search.
+
+    Negamax alpha-beta over plays and passes, deepened one ply at a time so
+    a time budget can stop it with the best line found so far. Plays are
+    made and unmade on a private copy of the board, so the caller's game
+    is never touched. Plays are tried best-first: the transposition table's
+    move, then plays that go out, then the ply's killers, then by score.
+    After the first play at a node the rest get a null window (principal
+    variation search), and each iteration starts from a narrow window
+    around the last value. These cut the tree but don't change its size
+    class: a full 7-vs-7 endgame still branches by hundreds of plays per
+    ply, so only short endgames finish in a second or so. Past the budget
+    the result is a depth-limited estimate and Solution.isExact is false.
+
+    Every rack in the search is part of one of the two racks at the root, so
+    plays are never generated for the position as a whole. Each line's plays
+    for a whole root rack are generated the first time the line is seen in
+    that state and kept with their scores; a node reads every line's state
+    from the board and takes the kept plays whose tiles are still on the
+    rack. Only lines that earlier plays in the search have changed cost a
+    generator pass or any scoring. Rack hashes, tile counts and values are
+    updated as tiles are played and taken back.
+
+    The game ends when a player plays out, gaining their opponent's rack
+    value while the opponent loses it, or after two passes in a row, when
+    each player loses their own rack value. Lines cut off by the depth
+    limit count as 0 from there; a subtree that reached the end of the game
+    on every line is stored as exact at any depth, and the search stops as
+    soon as a whole iteration is exact.
+
+    Interrupting the solving thread stops it like running out of time.
+    Not thread safe; keep one solver per thread.
+*/
+public class EndgameSolver {
+    // Each play uses a tile and passes can't come twice in a row, so no game runs longer
+    public static final int MAX_PLIES = 4 * Game.NUM_TILES_IN_RACK + 1;
+
+    private static final int INFINITY = 1000000;
+    private static final int EXACT_DEPTH = 255;
+    private static final long PASS_KEY = 0x5DEECE66DL * 0x9E3779B97F4A7C15L;
+
+    private static final int LINE_TABLE_BITS = 14;
+    // Kept plays per side before the table is cleared and filled again
+    private static final int MAX_KEPT_PLAYS = 1 << 18;
+    // A rack's tiles packed four bits per kind, at most one kind per tile
+    private static final int HELD_GUARD = 0x888888;
+    // Plays found by selection before the rest of a node's plays are sorted
+    private static final int SELECTED_PICKS = 4;
+    // Half-width of the root window around the previous iteration's value
+    private static final int ASPIRATION = 16;
+
+    public static class Solution {
+        private List<Move> line;
+        private int value;
+        private int spread;
+        private int depth;
+        private boolean exact;
+        private long nodes;
+
+        // The principal line from the root; null entries are passes
+        public List<Move> getLine() {
+            return this.line;
+        }
+
+        public Move getBestMove() {
+            return line.isEmpty() ? null : line.get(0);
+        }
+
+        // Change in the solving player's spread from here to the end
+        public int getValue() {
+            return this.value;
+        }
+
+        // The solving player's final spread with best play
+        public int getSpread() {
+            return this.spread;
+        }
+
+        public int getDepth() {
+            return this.depth;
+        }
+
+        // False if the time budget ran out before the search reached every ending
+        public boolean isExact() {
+            return this.exact;
+        }
+
+        public long getNodes() {
+            return this.nodes;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(exact ? "exact" : "depth "+depth).append(" value=").append(value)
+                .append(" spread=").append(spread).append(" nodes=").append(nodes).append(':');
+            for (Move move : line) {
+                sb.append(' ').append((move == null) ? "pass" : move.getWordString());
+            }
+            return sb.toString();
+        }
+    }
+
+    // The plays along one line, in one state, for a side's root rack
+    private static class LinePlays {
+        private int line;
+        private long hash;
+        private long[] state;
+        private Move[] moves;
+        private int[] scores;
+        private int[] tiles; // The tiles each play uses, packed like Side.held
+        private LinePlays next;
+    }
+
+    /*
+        One player in the search: their rack at the root and what is left
+        of it. held packs the count of each of the root rack's tile kinds
+        four bits apiece, so checking that a play's tiles are still there is
+        one subtraction.
+    */
+    private static class Side {
+        private char[] rack;
+        private int[] counts = new int[27];
+        private int[] slots = new int[27];
+        private int held;
+        private int tiles;
+        private int value;
+        private long hash;
+        private LinePlays[] lines = new LinePlays[1 << LINE_TABLE_BITS];
+        private int keptPlays;
+
+        private void deal(char[] rack) {
+            this.rack = rack.clone();
+            Arrays.fill(counts, 0);
+            held = 0;
+            tiles = 0;
+            value = 0;
+            int kinds = 0;
+            for (char tile : rack) {
+                if (tile == Game.EMT || tile == '\0') continue;
+                int kind = TileBag.kindOf(tile);
+                if (counts[kind] == 0) {
+                    slots[kind] = kinds++;
+                }
+                counts[kind]++;
+                held += 1 << (4 * slots[kind]);
+                tiles++;
+                value += Board.getLetterValue(tile);
+            }
+            hash = Game.hashRack(rack);
+            Arrays.fill(lines, null);
+            keptPlays = 0;
+        }
+
+        private void take(int kind) {
+            hash ^= Game.rackKey(kind, counts[kind]) ^ Game.rackKey(kind, counts[kind] - 1);
+            counts[kind]--;
+            held -= 1 << (4 * slots[kind]);
+            tiles--;
+            value -= Board.getLetterValue(TileBag.tileOf(kind));
+        }
+
+        private void giveBack(int kind) {
+            counts[kind]++;
+            hash ^= Game.rackKey(kind, counts[kind]) ^ Game.rackKey(kind, counts[kind] - 1);
+            held += 1 << (4 * slots[kind]);
+            tiles++;
+            value += Board.getLetterValue(TileBag.tileOf(kind));
+        }
+
+        private boolean holds(int needed) {
+            return (((held | HELD_GUARD) - needed) & HELD_GUARD) == HELD_GUARD;
+        }
+    }
+
+    private Lexicon lexicon;
+    private MoveGenerator generator;
+    private TranspositionTable table;
+    private long timeBudgetNanos = 500000000L;
+
+    // Search state
+    private Board board;
+    private Side[] sides = { new Side(), new Side() };
+    private List<List<Move>> plyMoves = new ArrayList<List<Move>>();
+    private long[][] order = new long[MAX_PLIES + 1][64];
+    private Move[][] killers = new Move[MAX_PLIES + 1][2];
+    private int[][] scores = new int[MAX_PLIES + 1][64];
+    private long[] lineState = new long[Board.BOARD_WIDTH];
+    private List<Move> lineMoves = new ArrayList<Move>();
+    private Move[][] pv = new Move[MAX_PLIES + 2][MAX_PLIES + 2];
+    private int[] pvLength = new int[MAX_PLIES + 2];
+    private boolean horizon;
+    private boolean stopped;
+    private long deadline;
+    private long nodes;
+
+    public EndgameSolver(Lexicon lexicon) {
+        this.lexicon = lexicon;
+        this.generator = new MoveGenerator(lexicon);
+        this.table = new TranspositionTable(20, TranspositionTable.Replacement.AGED_DEPTH);
+        for (int ply = 0; ply <= MAX_PLIES; ply++) {
+            plyMoves.add(new ArrayList<Move>());
+        }
+    }
+
+    public Lexicon getLexicon() {
+        return this.lexicon;
+    }
+
+    public void setTimeBudget(long millis) {
+        this.timeBudgetNanos = millis * 1000000L;
+    }
+
+    /*
+        Solves the endgame for the given player to move. The game must have
+        two players and an empty bag.
+    */
+    public Solution solve(Game game, int playerIndex) {
+        if (game.numPlayers != 2 || game.getNumTiles() > 0) {
+            throw new IllegalArgumentException("Endgames need two players and an empty bag");
+        }
+        board = new Board(game.board);
+        if (lineState.length < board.getGeometry().getWidth()) {
+            lineState = new long[board.getGeometry().getWidth()];
+        }
+        sides[0].deal(game.playerRacks[playerIndex]);
+        sides[1].deal(game.playerRacks[1 - playerIndex]);
+        table.newSearch();
+        for (Move[] plyKillers : killers) {
+            Arrays.fill(plyKillers, null);
+        }
+        nodes = 0;
+        stopped = false;
+        deadline = System.nanoTime() + timeBudgetNanos;
+
+        Solution best = null;
+        for (int depth = 1; depth <= MAX_PLIES; depth++) {
+            // Search a narrow window around the last value first, the full one if the value falls outside
+            int alpha = (best == null) ? -INFINITY : best.value - ASPIRATION;
+            int beta = (best == null) ? INFINITY : best.value + ASPIRATION;
+            horizon = false;
+            int value = search(0, depth, alpha, beta, 0, 0);
+            if ((value <= alpha || value >= beta) && !stopped) {
+                horizon = false;
+                value = search(0, depth, -INFINITY, INFINITY, 0, 0);
+            }
+            if (stopped && best != null) {
+                break;
+            }
+            best = new Solution();
+            best.line = new ArrayList<Move>(Arrays.asList(pv[0]).subList(0, pvLength[0]));
+            best.value = value;
+            best.depth = depth;
+            best.exact = !horizon && !stopped;
+            if (best.exact || stopped) {
+                break;
+            }
+        }
+        best.nodes = nodes;
+        // Plays are shared between nodes, so score the line's from the positions it reaches
+        for (int ply = 0; ply < best.line.size(); ply++) {
+            Move move = best.line.get(ply);
+            if (move != null) {
+                move.setScore(board.scoreMove(move));
+                make(move, sides[ply % 2]);
+            }
+        }
+        best.spread = game.playerScores[playerIndex] - game.playerScores[1 - playerIndex] + best.value;
+        return best;
+    }
+
+    /*
+        Negamax value for the side to move (racks[side]): the change in their
+        spread from here to the end of the game.
+    */
+    private int search(int ply, int depth, int alpha, int beta, int passes, int side) {
+        pvLength[ply] = 0;
+        // Reading the clock costs little next to collecting a node's plays, so check at every one
+        nodes++;
+        if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (depth == 0) {
+            horizon = true;
+            return 0;
+        }
+        Side mine = sides[side];
+        Side theirs = sides[1 - side];
+
+        long key = board.getHash() ^ mine.hash ^ Long.rotateLeft(theirs.hash, 32)
+                ^ ((passes > 0) ? PASS_KEY : 0);
+        long entry = table.probe(key);
+        int hashMove = TranspositionTable.NO_MOVE;
+        if (entry != 0) {
+            int stored = TranspositionTable.getValue(entry);
+            int bound = TranspositionTable.getBound(entry);
+            hashMove = TranspositionTable.getMove(entry);
+            if (TranspositionTable.getDepth(entry) >= depth && ply > 0
+                    && (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && stored >= beta)
+                        || (bound == TranspositionTable.UPPER && stored <= alpha))) {
+                if (TranspositionTable.getDepth(entry) != EXACT_DEPTH) {
+                    horizon = true;
+                }
+                return stored;
+            }
+        }
+
+        List<Move> moves = plyMoves.get(ply);
+        moves.clear();
+        collectPlays(ply, mine, moves);
+        int rackSize = mine.tiles;
+        int[] scores = this.scores[ply];
+
+        boolean outerHorizon = horizon;
+        horizon = false;
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestIndex = TranspositionTable.NO_MOVE;
+
+        if (depth == 1) {
+            /*
+                Replies would be cut off, so each play is worth its score and
+                no order is needed. Plays that end the game come first: if
+                one of them reaches beta the node's value holds at any depth.
+            */
+            if (passes > 0) {
+                best = theirs.value - mine.value; // Two passes end the game
+                bestIndex = moves.size();
+            }
+            for (int i = 0; i < moves.size(); i++) {
+                if (moves.get(i).getNumTilesPlaced() == rackSize && scores[i] + 2 * theirs.value > best) {
+                    best = scores[i] + 2 * theirs.value;
+                    bestIndex = i;
+                }
+            }
+            if (best < beta) {
+                for (int i = 0; i < moves.size(); i++) {
+                    if (moves.get(i).getNumTilesPlaced() != rackSize) {
+                        horizon = true;
+                        if (scores[i] > best) {
+                            best = scores[i];
+                            bestIndex = i;
+                        }
+                    }
+                }
+                if (passes == 0) {
+                    horizon = true;
+                    if (0 > best) {
+                        best = 0;
+                        bestIndex = moves.size();
+                    }
+                }
+            }
+            pv[ply][0] = (bestIndex < moves.size()) ? moves.get(bestIndex) : null;
+            pvLength[ply] = 1;
+        }
+        else {
+            long[] order = orderMoves(ply, moves, rackSize, hashMove);
+            // The last entry, index moves.size(), stands for passing
+            for (int n = 0; n <= moves.size() && !stopped; n++) {
+                int i = (n < moves.size()) ? pick(order, n, moves.size()) : moves.size();
+                Move move = (i < moves.size()) ? moves.get(i) : null;
+                int value;
+                boolean over = false;
+                if (move == null) {
+                    if (passes > 0) {
+                        value = theirs.value - mine.value; // Two passes end the game
+                        over = true;
+                    }
+                    else {
+                        value = -searchReply(ply + 1, depth - 1, -beta, -alpha, 1, 1 - side, n > 0);
+                    }
+                }
+                else if (move.getNumTilesPlaced() == rackSize) {
+                    value = scores[i] + 2 * theirs.value; // Plays out
+                    over = true;
+                }
+                else {
+                    // The reply's window is shifted by this play's score
+                    int score = scores[i];
+                    make(move, mine);
+                    value = score - searchReply(ply + 1, depth - 1, score - beta, score - alpha, 0, 1 - side, n > 0);
+                    unmake(move, mine);
+                }
+
+                if (value > best) {
+                    best = value;
+                    bestIndex = i;
+                    pv[ply][0] = move;
+                    if (over) {
+                        pvLength[ply] = 1;
+                    }
+                    else {
+                        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                        pvLength[ply] = pvLength[ply + 1] + 1;
+                    }
+                }
+                if (best > alpha) {
+                    alpha = best;
+                }
+                if (alpha >= beta) {
+                    if (move != null && i != hashMove && killers[ply][0] != move) {
+                        killers[ply][1] = killers[ply][0];
+                        killers[ply][0] = move;
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (!stopped) {
+            int bound = (best <= originalAlpha) ? TranspositionTable.UPPER
+                    : (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            int storedDepth = horizon ? depth : EXACT_DEPTH;
+            table.store(key, best, storedDepth, bound, (bestIndex < moves.size()) ? bestIndex : TranspositionTable.NO_MOVE);
+        }
+        horizon |= outerHorizon;
+        return best;
+    }
+
+    /*
+        Principal variation search: once a node has searched its first
+        play, the others only need to show they are no better, which a
+        window of width one (alpha, alpha + 1) settles with far fewer
+        nodes. Only a reply that might beat it is searched again in full.
+        In the reply's terms the narrow window is (beta - 1, beta).
+    */
+    private int searchReply(int ply, int depth, int alpha, int beta, int passes, int side, boolean scout) {
+        if (scout && beta - alpha > 1) {
+            int value = search(ply, depth, beta - 1, beta, passes, side);
+            if (value >= beta || value <= alpha || stopped) {
+                return value;
+            }
+        }
+        return search(ply, depth, alpha, beta, passes, side);
+    }
+
+    // Adds the kept plays of every line that the side can still make, with their scores
+    private void collectPlays(int ply, Side side, List<Move> moves) {
+        int width = board.getGeometry().getWidth();
+        for (Board.Direction dir : Board.Direction.values()) {
+            for (int file = 0; file < width; file++) {
+                int length = generator.getLineState(board, dir, file, lineState);
+                if (length == 0) continue;
+                LinePlays plays = findLine(side, dir.ordinal() * width + file, dir, file, length);
+                for (int i = 0; i < plays.moves.length; i++) {
+                    if (side.holds(plays.tiles[i])) {
+                        if (scores[ply].length == moves.size()) {
+                            scores[ply] = Arrays.copyOf(scores[ply], 2 * moves.size());
+                        }
+                        scores[ply][moves.size()] = plays.scores[i];
+                        moves.add(plays.moves[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    // The kept plays for the line in its current state, generated if it has not been seen
+    private LinePlays findLine(Side side, int line, Board.Direction dir, int file, int length) {
+        long hash = line;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ lineState[i]) * 0x9E3779B97F4A7C15L;
+            hash ^= hash >>> 29;
+        }
+        int bucket = (int) (hash >>> (64 - LINE_TABLE_BITS));
+        for (LinePlays plays = side.lines[bucket]; plays != null; plays = plays.next) {
+            if (plays.hash == hash && plays.line == line
+                    && Arrays.equals(plays.state, 0, plays.state.length, lineState, 0, length)) {
+                return plays;
+            }
+        }
+
+        lineMoves.clear();
+        generator.generateLine(board, side.rack, dir, file, lineMoves);
+        if (side.keptPlays + lineMoves.size() > MAX_KEPT_PLAYS) {
+            Arrays.fill(side.lines, null);
+            side.keptPlays = 0;
+        }
+        LinePlays plays = new LinePlays();
+        plays.line = line;
+        plays.hash = hash;
+        plays.state = Arrays.copyOf(lineState, length);
+        plays.moves = lineMoves.toArray(new Move[0]);
+        plays.scores = new int[plays.moves.length];
+        plays.tiles = new int[plays.moves.length];
+        for (int i = 0; i < plays.moves.length; i++) {
+            plays.scores[i] = board.scoreMove(plays.moves[i]);
+            char[] word = plays.moves[i].getWord();
+            for (int j = 0; j < word.length; j++) {
+                if (plays.moves[i].isPlaced(j)) {
+                    plays.tiles[i] += 1 << (4 * side.slots[kindPlaced(word[j])]);
+                }
+            }
+        }
+        plays.next = side.lines[bucket];
+        side.lines[bucket] = plays;
+        side.keptPlays += plays.moves.length;
+        return plays;
+    }
+
+    /*
+        Sort keys for the moves, best first: the table's move, then plays
+        that go out, then this ply's killers (plays that cut off a sibling
+        node), then by score. Each entry packs the sort key above the index.
+        Most nodes that cut off do so within their first few plays, so pick
+        finds those by selection and sorts the rest only when a node gets
+        that far.
+    */
+    private long[] orderMoves(int ply, List<Move> moves, int rackSize, int hashMove) {
+        if (order[ply].length < moves.size()) {
+            order[ply] = new long[2 * moves.size()];
+        }
+        long[] keys = order[ply];
+        Move[] plyKillers = killers[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            Move move = moves.get(i);
+            int score = scores[ply][i];
+            long priority = (i == hashMove) ? 3L * INFINITY
+                    : (move.getNumTilesPlaced() == rackSize) ? 2L * INFINITY + score
+                    : (move == plyKillers[0]) ? INFINITY + 1
+                    : (move == plyKillers[1]) ? INFINITY
+                    : score;
+            keys[i] = ((3L * INFINITY - priority) << 32) | i;
+        }
+        return keys;
+    }
+
+    // The index of the n-th best move, given the first n have been picked
+    private static int pick(long[] keys, int n, int count) {
+        if (n < SELECTED_PICKS) {
+            int min = n;
+            for (int j = n + 1; j < count; j++) {
+                if (keys[j] < keys[min]) {
+                    min = j;
+                }
+            }
+            long key = keys[min];
+            keys[min] = keys[n];
+            keys[n] = key;
+        }
+        else if (n == SELECTED_PICKS) {
+            Arrays.sort(keys, n, count);
+        }
+        return (int) (keys[n] & 0xFFFFFFFFL);
+    }
+
+    // Places the move's tiles and takes them off the side's rack
+    private void make(Move move, Side side) {
+        char[] word = move.getWord();
+        for (int i = 0; i < word.length; i++) {
+            if (!move.isPlaced(i)) continue;
+            side.take(kindPlaced(word[i]));
+            board.placeTile(new Board.Tile(word[i], move.getCol(i), move.getRow(i)));
+        }
+    }
+
+    private void unmake(Move move, Side side) {
+        char[] word = move.getWord();
+        for (int i = 0; i < word.length; i++) {
+            if (!move.isPlaced(i)) continue;
+            board.removeTile(move.getCol(i), move.getRow(i));
+            side.giveBack(kindPlaced(word[i]));
+        }
+    }
+
+    // The rack tile a placed letter came from; blanks are placed in lower case
+    private static int kindPlaced(char letter) {
+        return (letter >= 'a' && letter <= 'z') ? 0 : TileBag.kindOf(letter);
+    }
+}
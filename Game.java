@@ -1,10 +1,8 @@
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 
 public class Game {
@@ -16,48 +14,125 @@ public class Game {
     private static final int[] TILE_DISTRIBUTION =
         { 2,7,2,2,3,9,1,2,2,6,1,1,3,2,4,5,2,1,4,4,4,3,1,1,1,1,1 };
         //?,A,B,C,D,E,F,G,H,I,J,K,L,M,N,O,P,Q,R,S,T,U,V,W,X,Y,Z
+    /*
+        Zobrist keys for racks: a rack hashes as the XOR of one key per tile
+        kind and count, so the order of tiles on the rack does not matter.
+    */
+    private static final long[][] RACK_KEYS = new long[TILE_DISTRIBUTION.length][NUM_TILES_IN_RACK + 1];
+    private static final long[] PLAYER_KEYS = new long[16];
+
+    static {
+        SplittableRandom keyRng = new SplittableRandom(0x7AC4E5L);
+        for (int kind = 0; kind < RACK_KEYS.length; kind++) {
+            for (int count = 1; count <= NUM_TILES_IN_RACK; count++) {
+                RACK_KEYS[kind][count] = keyRng.nextLong();
+            }
+        }
+        for (int i = 0; i < PLAYER_KEYS.length; i++) {
+            PLAYER_KEYS[i] = keyRng.nextLong();
+        }
+    }
+
     private static final String DEFAULT_LEXICON = "lexicons/nwl18.txt";
     private static final int DEFAULT_NUM_PLAYERS = 1;
 
-    public String[] dictionary;
+    public Lexicon lexicon;
     public Board board;
-    public List<Board> history;
+    public List<Turn> history;
     public int numPlayers;
     public int[] playerScores;
     public char[][] playerRacks;
-    public int[] tileBag;
-    public int numTiles;
-    private Random rng;
+    public TileBag tileBag;
+
+    /*
+        One entry of the game history: what a play changed, so it can be taken
+        back without keeping copies of the board. Undoing a turn costs the
+        same no matter how full the board is.
+    */
+    public static class Turn {
+        private int playerIndex;
+        private List<Board.Tile> tiles;
+        private int score;
+        private char[] rackBefore;
+        private char[] rackAfter;
+        private char[] draws;
+
+        public Turn(int playerIndex, List<Board.Tile> tiles, int score,
+                char[] rackBefore, char[] rackAfter, char[] draws) {
+            this.playerIndex = playerIndex;
+            this.tiles = tiles;
+            this.score = score;
+            this.rackBefore = rackBefore;
+            this.rackAfter = rackAfter;
+            this.draws = draws;
+        }
+
+        public int getPlayerIndex() {
+            return this.playerIndex;
+        }
+
+        public List<Board.Tile> getTiles() {
+            return this.tiles;
+        }
+
+        public int getScore() {
+            return this.score;
+        }
+
+        public char[] getRackBefore() {
+            return this.rackBefore;
+        }
+
+        public char[] getRackAfter() {
+            return this.rackAfter;
+        }
+
+        public char[] getDraws() {
+            return this.draws;
+        }
+    }
 
     public Game() {
         this(DEFAULT_LEXICON, DEFAULT_NUM_PLAYERS);
     }
     public Game(String filename, int numPlayers) {
-        // Random number generator
-        rng = new Random();
-        // Scan in dictionary
-        Scanner sc;
-        try{
-            sc = new Scanner(new File(filename));
-        }
-        catch (FileNotFoundException e) {
-            System.out.println("ERROR: "+filename+" doesn't exist.");
-            return;
+        // Share the lexicon with any other game on the same file; the first opens it
+        try {
+            lexicon = LexiconRegistry.get(filename);
         }
-        ArrayList<String> words = new ArrayList<String>();
-        while (sc.hasNext()) {
-            words.add(sc.next());
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't load "+filename+": "+e.getMessage());
+            return;
         }
-        dictionary = words.toArray(new String[10]);
 
-        // Initialize game board and tile bag with tile count
-        board = new Board();
-        history = new ArrayList<Board>();
-        tileBag = TILE_DISTRIBUTION;
-        numTiles = 0;
-        for (int i = 0; i < tileBag.length; i++) {
-            numTiles += tileBag[i];
-        }
+        setUp(numPlayers, new SplittableRandom());
+    }
+
+    // Game on an already loaded lexicon, drawing tiles with the given generator
+    public Game(Lexicon lexicon, int numPlayers, SplittableRandom rng) {
+        this.lexicon = lexicon;
+        setUp(numPlayers, rng);
+    }
+
+    /*
+        Game with its own tile distribution (27 counts, blanks first) and
+        bonus layout, for trying out variants; see BalanceOptimiser.
+    */
+    public Game(Lexicon lexicon, int numPlayers, SplittableRandom rng, int[] tileDistribution, char[][] bonusValues) {
+        this.lexicon = lexicon;
+        setUp(numPlayers, rng, tileDistribution);
+        board.setBonusValues(bonusValues);
+    }
+
+    private void setUp(int numPlayers, SplittableRandom rng) {
+        setUp(numPlayers, rng, TILE_DISTRIBUTION);
+    }
+
+    private void setUp(int numPlayers, SplittableRandom rng, int[] tileDistribution) {
+        // Initialize game board and tile bag
+        board = new Board(lexicon);
+        history = new ArrayList<Turn>();
+        tileBag = new TileBag(tileDistribution, rng);
 
         // Initialize player scores
         this.numPlayers = numPlayers;
@@ -68,33 +143,147 @@ public class Game {
         }
     }
 
+    /*
+        Copy of a game in progress for search and simulation. The lexicon is
+        shared; the copy starts with an empty history, and its bag draws from
+        the given generator. The other game is only read, so copies can be
+        taken from any thread.
+    */
+    public Game(Game other, SplittableRandom rng) {
+        lexicon = other.lexicon;
+        board = new Board(other.board);
+        history = new ArrayList<Turn>();
+        numPlayers = other.numPlayers;
+        playerScores = other.playerScores.clone();
+        playerRacks = new char[numPlayers][];
+        for (int i = 0; i < numPlayers; i++) {
+            playerRacks[i] = other.playerRacks[i].clone();
+        }
+        tileBag = new TileBag(other.tileBag, rng);
+    }
+
+    // Resets this game to another's position, reusing arrays; history is cleared
+    public void copyFrom(Game other) {
+        lexicon = other.lexicon;
+        board.copyFrom(other.board);
+        history.clear();
+        for (int i = 0; i < numPlayers; i++) {
+            playerScores[i] = other.playerScores[i];
+            System.arraycopy(other.playerRacks[i], 0, playerRacks[i], 0, NUM_TILES_IN_RACK);
+        }
+        tileBag.copyFrom(other.tileBag);
+    }
+
+    public void setRandom(SplittableRandom rng) {
+        tileBag.setRandom(rng);
+    }
+
+    public int getNumTiles() {
+        return tileBag.size();
+    }
+
     public char drawTile() {
-        // Decrement tile count unless it is already at 0
-        //  in that case return empty
-        if (numTiles-- == 0) {
-            return EMT;
+        return tileBag.draw();
+    }
+
+    /*
+        Validates, scores and places a whole play for a player. Returns the
+        score, or -1 if the play is invalid or the tiles are not on the
+        player's rack, in which case nothing changes.
+    */
+    public int playTiles(List<Board.Tile> tiles, int playerIndex) {
+        char[] rack = Arrays.copyOf(playerRacks[playerIndex], NUM_TILES_IN_RACK);
+        for (Board.Tile tile : tiles) {
+            char needed = rackLetter(tile.getData());
+            int i = 0;
+            while (i < rack.length && rack[i] != needed) {
+                i++;
+            }
+            if (i == rack.length) {
+                return -1;
+            }
+            rack[i] = EMT;
         }
 
-        // Generate random tile number
-        int destIndex = rng.nextInt(numTiles);
-        int index = 0;
-        int letter = -1;
-        while (index <= destIndex) {
-            index += tileBag[++letter];
+        int score = board.scoreTilePlacement(tiles);
+        if (score < 0) {
+            return -1;
         }
-        // Remove tile from bag
-        tileBag[letter]--;
-        // Return corresponding char
-        if (letter == 0) {
-            return BLK;
+        for (Board.Tile tile : tiles) {
+            placeTile(tile, playerIndex);
         }
-        else {
-            return (char)('@' + letter);
+        playerScores[playerIndex] += score;
+        return score;
+    }
+
+    /*
+        Fast path for plays that came from MoveGenerator on this position and
+        are known to be legal: no validation and no history. Refills the rack
+        and returns the score.
+    */
+    public int applyMove(Move move, int playerIndex) {
+        int score = board.scoreMove(move);
+        char[] word = move.getWord();
+        for (int i = 0; i < word.length; i++) {
+            if (!move.isPlaced(i)) continue;
+            int tileIndex = findOnPlayerRack(rackLetter(word[i]), playerIndex);
+            playerRacks[playerIndex][tileIndex] = EMT;
+            board.placeTile(new Board.Tile(word[i], move.getCol(i), move.getRow(i)));
         }
+        playerScores[playerIndex] += score;
+        refillRack(playerIndex, null);
+        return score;
+    }
+
+    /*
+        Puts every rack except the given player's back in the bag and deals
+        them again. From that player's point of view the result is an equally
+        likely guess at the hidden tiles.
+    */
+    public void randomizeUnseen(int playerIndex) {
+        for (int p = 0; p < numPlayers; p++) {
+            if (p == playerIndex) continue;
+            char[] rack = playerRacks[p];
+            for (int i = 0; i < rack.length; i++) {
+                if (rack[i] != EMT && rack[i] != '\0') {
+                    tileBag.returnTile(rack[i]);
+                    rack[i] = EMT;
+                }
+            }
+        }
+        for (int p = 0; p < numPlayers; p++) {
+            if (p != playerIndex) {
+                refillRack(p, null);
+            }
+        }
+    }
+
+    // True once the bag is empty and some player has emptied their rack
+    public boolean isOver() {
+        if (!tileBag.isEmpty()) {
+            return false;
+        }
+        for (int p = 0; p < numPlayers; p++) {
+            boolean empty = true;
+            for (char tile : playerRacks[p]) {
+                if (tile != EMT && tile != '\0') {
+                    empty = false;
+                }
+            }
+            if (empty) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Blanks are placed as a lower case letter but sit on the rack as BLK
+    private static char rackLetter(char data) {
+        return (data >= 'a' && data <= 'z') ? BLK : data;
     }
 
     public boolean placeTile(Board.Tile tile, int playerIndex) {
-        int tileIndex = findOnPlayerRack(tile.getData(), playerIndex);
+        int tileIndex = findOnPlayerRack(rackLetter(tile.getData()), playerIndex);
         if (tileIndex == -1) {
             return false;
         }
@@ -130,68 +319,112 @@ public class Game {
     }
 
     public boolean restockRack(int playerIndex) {
-        char[] rack = playerRacks[playerIndex];
-        for (int i = 0; i < rack.length; i++) {
-            if (rack[i] == '\0' || rack[i] == EMT) {
-                if (numTiles == 0) {
-                    Arrays.sort(rack); // Sorts the tiles in place
-                    return false; // There are no more tiles left to take from
-                }
-                else {
-                    rack[i] = drawTile();
-                }
+        refillRack(playerIndex, null);
+        for (char tile : playerRacks[playerIndex]) {
+            if (tile == '\0' || tile == EMT) {
+                return false; // There are no more tiles left to take from
             }
         }
-        Arrays.sort(rack);
         return true;
     }
 
-    public char[] tileBagToCharArray() {
-        char[] tileArray = new char[numTiles];
-        int index = 0;
-        for (int k = 0; k < tileBag[0]; k++) {
-            tileArray[index++] = BLK;
-        }
-        for (int letter = 1; letter < tileBag.length; letter++) {
-            for (int k = 0; k < tileBag[letter]; k++) {
-                tileArray[index++] = (char)('@' + letter);
+    /*
+        Fills the empty slots of a rack from the bag, as far as it goes, and
+        sorts it. Drawn tiles are written to drawn (if not null). Returns how
+        many were drawn.
+    */
+    private int refillRack(int playerIndex, char[] drawn) {
+        char[] rack = playerRacks[playerIndex];
+        int count = 0;
+        for (int i = 0; i < rack.length && !tileBag.isEmpty(); i++) {
+            if (rack[i] == '\0' || rack[i] == EMT) {
+                rack[i] = drawTile();
+                if (drawn != null) {
+                    drawn[count] = rack[i];
+                }
+                count++;
             }
         }
-        return tileArray;
+        Arrays.sort(rack); // Sorts the tiles in place
+        return count;
     }
 
-    public boolean checkWord(String word) {
-        word = word.toUpperCase();
-        return checkWordBinarySearch(word, 0, dictionary.length - 1);
+    /*
+        Plays tiles for a player, refills the rack and records the turn in
+        history. Returns the score, or -1 if the play was rejected.
+    */
+    public int makeMove(List<Board.Tile> tiles, int playerIndex) {
+        char[] rackBefore = playerRacks[playerIndex].clone();
+        int score = playTiles(tiles, playerIndex);
+        if (score < 0) {
+            return -1;
+        }
+        char[] drawn = new char[NUM_TILES_IN_RACK];
+        int count = refillRack(playerIndex, drawn);
+        history.add(new Turn(playerIndex, new ArrayList<Board.Tile>(tiles), score,
+                rackBefore, playerRacks[playerIndex].clone(), Arrays.copyOf(drawn, count)));
+        return score;
     }
 
-    private boolean checkWordBinarySearch(String word, int startIndex, int endIndex) {
-        if (endIndex < startIndex) {
+    /*
+        Takes back the last turn in history: lifts its tiles, puts the drawn
+        tiles back in the bag and restores the rack and score.
+    */
+    public boolean unmakeMove() {
+        if (history.isEmpty()) {
             return false;
         }
-        if (startIndex == endIndex) {
-            return word.equals(dictionary[startIndex]);
-        }
-        int split = startIndex + (endIndex - startIndex)/2;
-        String pivot = dictionary[split];
-        // Check word length first
-        if (word.length() < pivot.length()) {
-            return checkWordBinarySearch(word, startIndex, split - 1);
+        Turn turn = history.remove(history.size() - 1);
+        for (Board.Tile tile : turn.getTiles()) {
+            board.removeTile(tile.getCol(), tile.getRow());
         }
-        else if (word.length() > pivot.length()) {
-            return checkWordBinarySearch(word, split + 1, endIndex);
+        for (char tile : turn.getDraws()) {
+            tileBag.returnTile(tile);
         }
-        // If word length equal, compare lexicographically
-        else {
-            if (word.compareTo(pivot) < 0) {
-                return checkWordBinarySearch(word, startIndex, split - 1);
-            }
-            else if (word.compareTo(pivot) > 0) {
-                return checkWordBinarySearch(word, split + 1, endIndex);
-            }
-            else {
-                return true;
-            }
+        System.arraycopy(turn.getRackBefore(), 0, playerRacks[turn.getPlayerIndex()], 0, NUM_TILES_IN_RACK);
+        playerScores[turn.getPlayerIndex()] -= turn.getScore();
+        return true;
+    }
+
+    public long getRackHash(int playerIndex) {
+        return hashRack(playerRacks[playerIndex]);
+    }
+
+    public static long hashRack(char[] rack) {
+        int[] counts = new int[TILE_DISTRIBUTION.length];
+        long hash = 0;
+        for (char tile : rack) {
+            if (tile == EMT || tile == '\0') continue;
+            int kind = TileBag.kindOf(tile);
+            hash ^= RACK_KEYS[kind][counts[kind]];
+            hash ^= RACK_KEYS[kind][++counts[kind]];
         }
+        return hash;
+    }
+
+    // A rack's hash is the XOR over tile kinds of the key for how many it holds (0 for none)
+    public static long rackKey(int kind, int count) {
+        return RACK_KEYS[kind][count];
+    }
+
+    // Copy of the standard tile counts, blanks first then A-Z
+    public static int[] getDefaultTileDistribution() {
+        return TILE_DISTRIBUTION.clone();
+    }
+
+    /*
+        Hash of the position as seen by the player to move: the board, that
+        player's rack and whose turn it is.
+    */
+    public long getPositionHash(int playerIndex) {
+        return board.getHash() ^ getRackHash(playerIndex) ^ PLAYER_KEYS[playerIndex % PLAYER_KEYS.length];
+    }
+
+    public char[] tileBagToCharArray() {
+        return tileBag.toCharArray();
+    }
+
+    public boolean checkWord(String word) {
+        return lexicon.contains(word);
     }
 }
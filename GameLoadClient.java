@@ -0,0 +1,277 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+/*
+    Load generator for GameServer. Opens every game up front, two
+    connections each, then plays them all out at once: each client thread
+    owns an equal share of the games and takes a turn in each of them in
+    rotation, so all of them stay open for the whole run while the thread
+    count sets how many moves are in flight. Players are greedy; every
+    game keeps a copy of the board to generate plays on, placing the same
+    tiles the server accepted.
+
+    The report counts PLAY and PASS requests per second over the playing
+    phase and percentiles of their round trip, measured from just before
+    the request is written to when its reply arrives, so move generation
+    on this side is left out.
+
+    Usage: java GameLoadClient <lexicon> [host] [port] [games] [threads] [seed]
+*/
+public class GameLoadClient {
+    private static final int MAX_TURNS = 200;
+
+    private static class Seat {
+        private Socket socket;
+        private BufferedReader in;
+        private OutputStream out;
+        private char[] rack;
+
+        private Seat(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            out = socket.getOutputStream();
+        }
+
+        // Sends one command and returns its reply split into words, or throws if it was refused
+        private String[] request(String line) throws IOException {
+            out.write((line+"\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Server closed the connection");
+            }
+            if (!reply.startsWith("OK")) {
+                throw new IOException(line+": "+reply);
+            }
+            return reply.split(" ");
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+
+    private static class ClientGame {
+        private Seat[] seats = new Seat[2];
+        private Board board;
+        private int turn;
+        private int turns;
+        private boolean over;
+    }
+
+    // Counts kept by one client thread
+    private static class Worker {
+        private List<ClientGame> games = new ArrayList<ClientGame>();
+        private MoveGenerator generator;
+        private List<Move> moves = new ArrayList<Move>();
+        private Tournament.LatencyHistogram latency = new Tournament.LatencyHistogram();
+        private long requests;
+        private long finished;
+        private long errors;
+    }
+
+    private Lexicon lexicon;
+    private String host;
+    private int port;
+
+    public GameLoadClient(Lexicon lexicon, String host, int port) {
+        this.lexicon = lexicon;
+        this.host = host;
+        this.port = port;
+    }
+
+    /*
+        Plays numGames two-player games on the given number of threads and
+        prints a summary. Game i is created with seed seed + i.
+    */
+    public void run(int numGames, int threads, long seed) throws IOException, InterruptedException {
+        Worker[] workers = new Worker[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Worker();
+            workers[t].generator = new MoveGenerator(lexicon);
+        }
+        long setupStart = System.nanoTime();
+        try {
+            for (int i = 0; i < numGames; i++) {
+                workers[i % threads].games.add(open(seed + i));
+            }
+        }
+        catch (IOException e) {
+            for (Worker worker : workers) {
+                for (ClientGame game : worker.games) {
+                    finish(game);
+                }
+            }
+            throw e;
+        }
+        System.out.printf("Opened %d games (%d connections) in %.2f s%n",
+                numGames, 2 * numGames, (System.nanoTime() - setupStart) / 1e9);
+
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] running = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            Worker worker = workers[t];
+            running[t] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (Exception e) {
+                    return;
+                }
+                play(worker);
+            }, "GameLoadClient-"+t);
+            running[t].start();
+        }
+        try {
+            start.await();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        long playStart = System.nanoTime();
+        for (Thread thread : running) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - playStart) / 1e9;
+
+        Tournament.LatencyHistogram latency = new Tournament.LatencyHistogram();
+        long requests = 0;
+        long finished = 0;
+        long errors = 0;
+        for (Worker worker : workers) {
+            latency.add(worker.latency);
+            requests += worker.requests;
+            finished += worker.finished;
+            errors += worker.errors;
+        }
+        System.out.printf("%d games, %d moves in %.2f s: %.0f moves/s; move latency p50=%dus p90=%dus p99=%dus max=%dus; %d errors%n",
+                finished, requests, seconds, (seconds > 0) ? requests / seconds : 0,
+                latency.getPercentile(0.5) / 1000, latency.getPercentile(0.9) / 1000,
+                latency.getPercentile(0.99) / 1000, latency.getMax() / 1000, errors);
+    }
+
+    private ClientGame open(long seed) throws IOException {
+        ClientGame game = new ClientGame();
+        game.board = new Board(lexicon);
+        try {
+            game.seats[0] = new Seat(host, port);
+            String[] reply = game.seats[0].request("NEW 2 "+seed);
+            game.seats[0].rack = reply[3].toCharArray();
+            game.seats[1] = new Seat(host, port);
+            reply = game.seats[1].request("JOIN "+reply[1]);
+            game.seats[1].rack = reply[3].toCharArray();
+        }
+        catch (IOException e) {
+            finish(game);
+            throw e;
+        }
+        return game;
+    }
+
+    private void play(Worker worker) {
+        int active = worker.games.size();
+        while (active > 0) {
+            for (ClientGame game : worker.games) {
+                if (game.over) continue;
+                try {
+                    takeTurn(worker, game);
+                }
+                catch (IOException e) {
+                    worker.errors++;
+                    game.over = true;
+                }
+                if (game.over) {
+                    finish(game);
+                    worker.finished++;
+                    active--;
+                }
+            }
+        }
+    }
+
+    private void takeTurn(Worker worker, ClientGame game) throws IOException {
+        Seat seat = game.seats[game.turn];
+        worker.moves.clear();
+        worker.generator.generate(game.board, seat.rack, worker.moves);
+        Move best = null;
+        int bestScore = -1;
+        for (Move move : worker.moves) {
+            int score = game.board.scoreMove(move);
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+
+        String command = (best == null) ? "PASS"
+                : "PLAY "+best.getDirection()+" "+best.getStartCol()+" "+best.getStartRow()+" "+best.getWordString();
+        long t0 = System.nanoTime();
+        String[] reply = seat.request(command);
+        worker.latency.record(System.nanoTime() - t0);
+        worker.requests++;
+
+        if (best != null) {
+            // The server took it, so the copy of the board gets the same tiles
+            for (Board.Tile tile : best.getTiles()) {
+                game.board.placeTile(tile);
+            }
+        }
+        seat.rack = reply[2].toCharArray();
+        game.turn = 1 - game.turn;
+        game.turns++;
+        game.over = reply.length > 3 || game.turns >= MAX_TURNS;
+    }
+
+    private void finish(ClientGame game) {
+        for (Seat seat : game.seats) {
+            if (seat == null) continue;
+            try {
+                seat.request("QUIT");
+            }
+            catch (IOException e) {
+                // Closing anyway
+            }
+            seat.close();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java GameLoadClient <lexicon> [host] [port] [games] [threads] [seed]");
+            return;
+        }
+        String host = (args.length > 1) ? args[1] : "localhost";
+        int port = (args.length > 2) ? Integer.parseInt(args[2]) : GameServer.DEFAULT_PORT;
+        int games = (args.length > 3) ? Integer.parseInt(args[3]) : 1000;
+        int threads = (args.length > 4) ? Integer.parseInt(args[4]) : 16;
+        long seed = (args.length > 5) ? Long.parseLong(args[5]) : 1;
+
+        Lexicon lexicon;
+        try {
+            lexicon = LexiconRegistry.get(args[0]);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't load "+args[0]+": "+e.getMessage());
+            return;
+        }
+        try {
+            new GameLoadClient(lexicon, host, port).run(games, Math.max(1, Math.min(threads, games)), seed);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: "+e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+    Everything needed to replay a game: the seed, the starting racks, and
+    for each turn the tiles placed, the score and the tiles drawn after it.
+
+    Binary format (little-endian, see GameRecordWriter and
+    GameRecordReader). A file starts with ints MAGIC and FORMAT_VERSION,
+    then holds records back to back, each:
+        int    length of the rest of the record in bytes
+        long   seed
+        byte   number of players
+        byte   board radius
+        short  number of turns
+        bytes  starting racks, NUM_TILES_IN_RACK per player (EMT for none)
+        per turn:
+            byte   player
+            byte   tiles placed (0 for a pass)
+            per tile:
+                short  its cell, as a packed index of the board's Geometry
+                byte   its letter (lower case for a blank)
+            short  score
+            byte   tiles drawn, followed by those tiles
+        shorts final score of each player
+    A typical game takes a few hundred bytes, and the leading length lets a
+    reader skip a record without decoding it.
+*/
+public class GameRecord {
+    public static final int MAGIC = 0x52475848; // "HXGR"
+    public static final int FORMAT_VERSION = 2;
+    public static final int HEADER_BYTES = 8;
+
+    public static class Turn {
+        private int playerIndex;
+        private int[] cells;
+        private char[] letters;
+        private int score;
+        private char[] draws;
+
+        public int getPlayerIndex() {
+            return this.playerIndex;
+        }
+
+        public boolean isPass() {
+            return cells.length == 0;
+        }
+
+        // Cells as packed indices of the record's Board.Geometry
+        public int[] getCells() {
+            return this.cells;
+        }
+
+        public char[] getLetters() {
+            return this.letters;
+        }
+
+        public int getScore() {
+            return this.score;
+        }
+
+        public char[] getDraws() {
+            return this.draws;
+        }
+    }
+
+    private long seed;
+    private int numPlayers;
+    private int radius;
+    private char[][] racks;
+    private List<Turn> turns = new ArrayList<Turn>();
+    private int[] scores;
+
+    private GameRecord() {
+    }
+
+    // Starts a record of a game that hasn't had a turn yet
+    public GameRecord(long seed, Game game) {
+        this.seed = seed;
+        this.numPlayers = game.numPlayers;
+        this.radius = game.board.getGeometry().getRadius();
+        this.racks = new char[numPlayers][];
+        for (int p = 0; p < numPlayers; p++) {
+            racks[p] = game.playerRacks[p].clone();
+        }
+        this.scores = new int[numPlayers];
+    }
+
+    /*
+        Records a play, given the player's rack before it and after the
+        refill; the tiles drawn are whatever the refill added.
+    */
+    public void addPlay(int playerIndex, Move move, int score, char[] rackBefore, char[] rackAfter) {
+        Turn turn = new Turn();
+        turn.playerIndex = playerIndex;
+        turn.cells = new int[move.getNumTilesPlaced()];
+        turn.letters = new char[turn.cells.length];
+        Board.Geometry geometry = Board.Geometry.of(radius);
+        int[] counts = new int[TileBag.NUM_KINDS];
+        addCounts(counts, rackAfter, 1);
+        addCounts(counts, rackBefore, -1);
+        char[] word = move.getWord();
+        int n = 0;
+        for (int i = 0; i < word.length; i++) {
+            if (!move.isPlaced(i)) continue;
+            turn.cells[n] = geometry.getIndex(move.getCol(i), move.getRow(i));
+            turn.letters[n] = word[i];
+            counts[TileBag.kindOf((word[i] >= 'a' && word[i] <= 'z') ? Board.BLK : word[i])]++;
+            n++;
+        }
+        // What the rack gained, net of what it played, is what was drawn
+        StringBuilder draws = new StringBuilder();
+        for (int kind = 0; kind < TileBag.NUM_KINDS; kind++) {
+            for (int k = 0; k < counts[kind]; k++) {
+                draws.append(TileBag.tileOf(kind));
+            }
+        }
+        turn.score = score;
+        turn.draws = draws.toString().toCharArray();
+        turns.add(turn);
+        scores[playerIndex] += score;
+    }
+
+    public void addPass(int playerIndex) {
+        Turn turn = new Turn();
+        turn.playerIndex = playerIndex;
+        turn.cells = new int[0];
+        turn.letters = new char[0];
+        turn.draws = new char[0];
+        turns.add(turn);
+    }
+
+    private static void addCounts(int[] counts, char[] rack, int delta) {
+        for (char tile : rack) {
+            if (tile != Board.EMT && tile != '\0') {
+                counts[TileBag.kindOf(tile)] += delta;
+            }
+        }
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public int getNumPlayers() {
+        return this.numPlayers;
+    }
+
+    public int getRadius() {
+        return this.radius;
+    }
+
+    public char[][] getRacks() {
+        return this.racks;
+    }
+
+    public List<Turn> getTurns() {
+        return this.turns;
+    }
+
+    public int[] getScores() {
+        return this.scores;
+    }
+
+    /*
+        Rebuilds the game as it stood after the first numTurns turns, with
+        the standard tile distribution. Its bag then holds exactly the
+        tiles not yet drawn and draws from the record's seed.
+    */
+    public Game replay(Lexicon lexicon, int numTurns) {
+        Game game = new Game(lexicon, numPlayers, new SplittableRandom(seed));
+        if (radius != Board.STANDARD_RADIUS) {
+            game.board = new Board(lexicon, radius);
+        }
+        Board.Geometry geometry = game.board.getGeometry();
+        // Swap the racks the new game dealt for the recorded ones
+        for (int p = 0; p < numPlayers; p++) {
+            for (char tile : game.playerRacks[p]) {
+                if (tile != Board.EMT && tile != '\0') {
+                    game.tileBag.returnTile(tile);
+                }
+            }
+        }
+        for (int p = 0; p < numPlayers; p++) {
+            for (int i = 0; i < Game.NUM_TILES_IN_RACK; i++) {
+                game.playerRacks[p][i] = racks[p][i];
+                takeFromBag(game, racks[p][i]);
+            }
+        }
+        for (Turn turn : turns.subList(0, Math.min(numTurns, turns.size()))) {
+            char[] rack = game.playerRacks[turn.playerIndex];
+            for (int i = 0; i < turn.cells.length; i++) {
+                char letter = turn.letters[i];
+                game.board.placeTile(new Board.Tile(letter, geometry.getCol(turn.cells[i]), geometry.getRow(turn.cells[i])));
+                int slot = game.findOnPlayerRack((letter >= 'a' && letter <= 'z') ? Board.BLK : letter, turn.playerIndex);
+                if (slot < 0) {
+                    throw new IllegalArgumentException("Turn plays "+letter+", which isn't on the rack");
+                }
+                rack[slot] = Board.EMT;
+            }
+            for (char tile : turn.draws) {
+                int slot = game.findOnPlayerRack(Board.EMT, turn.playerIndex);
+                if (slot < 0) {
+                    throw new IllegalArgumentException("Turn draws "+tile+", but the rack is already full");
+                }
+                takeFromBag(game, tile);
+                rack[slot] = tile;
+            }
+            Arrays.sort(rack);
+            game.playerScores[turn.playerIndex] += turn.score;
+        }
+        return game;
+    }
+
+    private static void takeFromBag(Game game, char tile) {
+        if (tile != Board.EMT && tile != '\0' && !game.tileBag.remove(tile)) {
+            throw new IllegalArgumentException("Record draws more "+tile+" tiles than the bag holds");
+        }
+    }
+
+    // Bytes encode will write, including the leading length
+    public int getEncodedSize() {
+        int size = 4 + 8 + 1 + 1 + 2 + numPlayers * Game.NUM_TILES_IN_RACK + 2 * numPlayers;
+        for (Turn turn : turns) {
+            size += 1 + 1 + 3 * turn.cells.length + 2 + 1 + turn.draws.length;
+        }
+        return size;
+    }
+
+    public void encode(ByteBuffer out) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(getEncodedSize() - 4);
+        out.putLong(seed);
+        out.put((byte) numPlayers);
+        out.put((byte) radius);
+        out.putShort((short) turns.size());
+        for (char[] rack : racks) {
+            for (int i = 0; i < Game.NUM_TILES_IN_RACK; i++) {
+                out.put((byte) ((i < rack.length && rack[i] != '\0') ? rack[i] : Board.EMT));
+            }
+        }
+        for (Turn turn : turns) {
+            out.put((byte) turn.playerIndex);
+            out.put((byte) turn.cells.length);
+            for (int i = 0; i < turn.cells.length; i++) {
+                out.putShort((short) turn.cells[i]);
+                out.put((byte) turn.letters[i]);
+            }
+            out.putShort((short) turn.score);
+            out.put((byte) turn.draws.length);
+            for (char tile : turn.draws) {
+                out.put((byte) tile);
+            }
+        }
+        for (int score : scores) {
+            out.putShort((short) score);
+        }
+    }
+
+    // Reads the record starting at the buffer's position, leaving it just past the end
+    public static GameRecord decode(ByteBuffer in) {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        in.getInt();
+        GameRecord record = new GameRecord();
+        record.seed = in.getLong();
+        record.numPlayers = in.get();
+        record.radius = in.get();
+        int numTurns = in.getShort();
+        record.racks = new char[record.numPlayers][Game.NUM_TILES_IN_RACK];
+        for (char[] rack : record.racks) {
+            for (int i = 0; i < rack.length; i++) {
+                rack[i] = (char) in.get();
+            }
+        }
+        for (int t = 0; t < numTurns; t++) {
+            Turn turn = new Turn();
+            turn.playerIndex = in.get();
+            int count = in.get();
+            turn.cells = new int[count];
+            turn.letters = new char[count];
+            for (int i = 0; i < count; i++) {
+                turn.cells[i] = in.getShort();
+                turn.letters[i] = (char) in.get();
+            }
+            turn.score = in.getShort();
+            turn.draws = new char[in.get()];
+            for (int i = 0; i < turn.draws.length; i++) {
+                turn.draws[i] = (char) in.get();
+            }
+            record.turns.add(turn);
+        }
+        record.scores = new int[record.numPlayers];
+        for (int p = 0; p < record.numPlayers; p++) {
+            record.scores[p] = in.getShort();
+        }
+        return record;
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/*
+    Reads a file of GameRecords front to back through memory maps. A single
+    mapping is limited to 2 GB, so the file is mapped a window at a time and
+    the next window starts at the first record the last one didn't fully
+    hold. skip steps over a record by its length alone, so counting or
+    sampling touches only a few bytes per game.
+
+    A record cut short at the end of the file, as after a crash while
+    writing, ends the scan. Not thread safe.
+*/
+public class GameRecordReader implements AutoCloseable {
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private FileChannel channel;
+    private long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    public GameRecordReader(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        size = channel.size();
+        try {
+            map(0);
+            if (window.limit() < GameRecord.HEADER_BYTES || window.getInt(0) != GameRecord.MAGIC) {
+                throw new IOException(filename+" is not a game record file.");
+            }
+            if (window.getInt(4) != GameRecord.FORMAT_VERSION) {
+                throw new IOException(filename+" has unsupported format version "+window.getInt(4)+".");
+            }
+            window.position(GameRecord.HEADER_BYTES);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_BYTES, size - start));
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+        Makes sure the whole next record is in the window. Returns its length
+        including the length field, or -1 at the end of the file.
+    */
+    private int prepare() throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (window.remaining() >= 4) {
+                long length = 4L + window.getInt(window.position());
+                if (length <= 4 || length > WINDOW_BYTES) {
+                    throw new IOException("Record at byte "+(windowStart + window.position())+" is corrupt.");
+                }
+                if (length <= window.remaining()) {
+                    return (int) length;
+                }
+            }
+            long next = windowStart + window.position();
+            if (attempt > 0 || next >= size) {
+                break;
+            }
+            map(next);
+        }
+        return -1;
+    }
+
+    public boolean hasNext() throws IOException {
+        return prepare() > 0;
+    }
+
+    // The next record, or null at the end of the file
+    public GameRecord next() throws IOException {
+        if (prepare() < 0) {
+            return null;
+        }
+        return GameRecord.decode(window);
+    }
+
+    // Steps over the next record without decoding it; false at the end of the file
+    public boolean skip() throws IOException {
+        int length = prepare();
+        if (length < 0) {
+            return false;
+        }
+        window.position(window.position() + length);
+        return true;
+    }
+
+    public void forEach(Consumer<GameRecord> consumer) throws IOException {
+        GameRecord record;
+        while ((record = next()) != null) {
+            consumer.accept(record);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/*
+    Appends GameRecords to a file. append encodes the record on the calling
+    thread and queues the bytes, so game threads never wait on the disk; a
+    single background thread drains the queue and writes everything waiting
+    with one gathering write. Records from one thread are written in the
+    order they were appended.
+
+    A new file gets the GameRecord header; an existing one is checked and
+    added to. A record left half written by a crash is cut off first, so
+    what is appended after it can still be read. Thread safe.
+*/
+public class GameRecordWriter implements AutoCloseable {
+    private static final int MAX_BATCH = 1024;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private FileChannel channel;
+    private LinkedBlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<ByteBuffer>();
+    private Thread thread;
+    private volatile IOException error;
+    private volatile boolean closed;
+    private long records;
+
+    public GameRecordWriter(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(GameRecord.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() == 0) {
+                header.putInt(GameRecord.MAGIC).putInt(GameRecord.FORMAT_VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+            else {
+                while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                }
+                if (header.position() < GameRecord.HEADER_BYTES || header.getInt(0) != GameRecord.MAGIC) {
+                    throw new IOException(filename+" is not a game record file.");
+                }
+                if (header.getInt(4) != GameRecord.FORMAT_VERSION) {
+                    throw new IOException(filename+" has unsupported format version "+header.getInt(4)+".");
+                }
+                long end = lastRecordEnd();
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                }
+            }
+            channel.position(channel.size());
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        thread = new Thread(this::drain, "GameRecordWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Walks the length prefixes to the end of the last record that is all there
+    private long lastRecordEnd() throws IOException {
+        long size = channel.size();
+        long end = GameRecord.HEADER_BYTES;
+        ByteBuffer length = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        while (end + 4 <= size) {
+            length.clear();
+            while (length.hasRemaining() && channel.read(length, end + length.position()) > 0) {
+            }
+            long next = end + 4 + length.getInt(0);
+            if (length.getInt(0) <= 0 || next > size) {
+                break;
+            }
+            end = next;
+        }
+        return end;
+    }
+
+    /*
+        Queues a record for writing and returns at once. Throws if the
+        writer is closed or an earlier write failed.
+    */
+    public void append(GameRecord record) throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (closed) {
+            throw new IOException("Game record writer is closed");
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(record.getEncodedSize());
+        record.encode(bytes);
+        bytes.flip();
+        queue.add(bytes);
+    }
+
+    // Records written to disk so far
+    public synchronized long getRecordsWritten() {
+        return records;
+    }
+
+    private void drain() {
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                // ByteBuffer.equals compares contents, so look for the marker itself
+                boolean end = batch.removeIf(bytes -> bytes == END);
+                if (!batch.isEmpty()) {
+                    ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                    ByteBuffer last = buffers[buffers.length - 1];
+                    while (last.hasRemaining()) {
+                        channel.write(buffers);
+                    }
+                    synchronized (this) {
+                        records += buffers.length;
+                    }
+                }
+                batch.clear();
+                if (end) {
+                    return;
+                }
+            }
+        }
+        catch (IOException e) {
+            error = e;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Writes everything queued, then closes the file
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(END);
+        try {
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
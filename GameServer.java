@@ -0,0 +1,627 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Headless server hosting many games at once over TCP. One selector thread
+    accepts connections and reads from all of them; complete lines are run on
+    a fixed pool of worker threads, one connection at a time and in the
+    order they arrived. Each game is guarded by its own lock, so play in one
+    game never waits on another, and the table of games is a concurrent map
+    rather than anything locked as a whole. Replies are written straight
+    from the worker when the socket has room, otherwise handed back to the
+    selector to finish.
+
+    Line protocol, ASCII, one command per line. Every command gets exactly
+    one reply line, starting OK or ERR:
+        NEW <players> [seed]     OK <game> <seat> <rack>
+        JOIN <game>              OK <game> <seat> <rack>
+        RACK                     OK <rack>
+        PLAY <direction> <col> <row> <word>
+                                 OK <score> <rack> [OVER]
+        PASS                     OK 0 <rack> [OVER]
+        STATE                    OK <turn> <WAITING|PLAYING|OVER> <scores> <board>
+        QUIT                     OK, then the server closes the connection
+    A rack is NUM_TILES_IN_RACK characters with EMT for empty slots. A PLAY
+    word spells the whole main strand from its start, tiles already on the
+    board included, with blanks in lower case, as Move.getWordString does.
+    scores are comma separated by seat and board is the BOARD_WIDTH rows
+    run together. Play starts once every seat is taken; the game ends when
+    it is over, after every player passes twice in a row, or when any
+    player leaves.
+
+    Usage: java GameServer <lexicon> [port] [threads]
+*/
+public class GameServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7777;
+    public static final int MAX_PLAYERS = 4;
+    private static final int MAX_LINE = 256;
+    private static final int MAX_QUEUED_LINES = 1024;
+    private static final int LINES_PER_TURN = 16; // Before a busy connection yields its worker
+
+    // One hosted game; everything in it is read and written only while holding it
+    private static class Session {
+        private int id;
+        private Game game;
+        private Connection[] seats;
+        private int joined;
+        private int turn;
+        private int passes;
+        private boolean over;
+    }
+
+    private static class Connection {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer input = ByteBuffer.allocate(MAX_LINE);
+        // Guarded by the connection
+        private ArrayDeque<String> lines = new ArrayDeque<String>();
+        private ArrayDeque<ByteBuffer> output = new ArrayDeque<ByteBuffer>();
+        private boolean scheduled;
+        private boolean closing;
+        private boolean disconnected;
+        // Only touched by the worker running this connection's lines
+        private Session session;
+        private int seat;
+    }
+
+    private Lexicon lexicon;
+    private ServerSocketChannel server;
+    private Selector selector;
+    private ExecutorService workers;
+    private Thread selectorThread;
+    private ConcurrentHashMap<Integer, Session> sessions = new ConcurrentHashMap<Integer, Session>();
+    private ConcurrentLinkedQueue<Connection> pendingWrites = new ConcurrentLinkedQueue<Connection>();
+    private AtomicInteger nextId = new AtomicInteger();
+    private AtomicLong nextSeed = new AtomicLong(System.nanoTime());
+    private volatile boolean running = true;
+
+    public GameServer(Lexicon lexicon, int port, int threads) throws IOException {
+        this.lexicon = lexicon;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.selectorThread = new Thread(this::select, "GameServer");
+        this.selectorThread.start();
+    }
+
+    // The port actually bound, useful when the server was asked for port 0
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getNumGames() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void select() {
+        try {
+            while (running) {
+                selector.select();
+                Connection conn;
+                while ((conn = pendingWrites.poll()) != null) {
+                    if (conn.key.isValid()) {
+                        conn.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    conn = (Connection) key.attachment();
+                    if (key.isWritable()) {
+                        flush(conn);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        read(conn);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: game server stopped: "+e.getMessage());
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection conn = new Connection();
+            conn.channel = channel;
+            conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+        }
+    }
+
+    // Splits what arrived into lines and queues them for a worker
+    private void read(Connection conn) {
+        int count;
+        try {
+            count = conn.channel.read(conn.input);
+        }
+        catch (IOException e) {
+            count = -1;
+        }
+        if (count < 0) {
+            disconnect(conn);
+            return;
+        }
+        ByteBuffer input = conn.input;
+        int start = 0;
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < input.position(); i++) {
+            if (input.get(i) == '\n') {
+                int end = (i > start && input.get(i - 1) == '\r') ? i - 1 : i;
+                lines.add(new String(input.array(), start, end - start, StandardCharsets.US_ASCII));
+                start = i + 1;
+            }
+        }
+        if (start == 0 && !input.hasRemaining()) {
+            closeAfterReplies(conn);
+            send(conn, "ERR line too long");
+            return;
+        }
+        input.limit(input.position()).position(start);
+        input.compact();
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        boolean schedule;
+        boolean overflow;
+        synchronized (conn) {
+            if (conn.closing) {
+                return; // Anything after QUIT is ignored
+            }
+            overflow = conn.lines.size() + lines.size() > MAX_QUEUED_LINES;
+            conn.lines.addAll(lines);
+            schedule = !conn.scheduled;
+            conn.scheduled = true;
+        }
+        if (overflow) {
+            disconnect(conn);
+        }
+        else if (schedule) {
+            workers.execute(() -> process(conn));
+        }
+    }
+
+    /*
+        Runs a connection's queued lines in order. Only one of these is ever
+        running or queued per connection, so the connection's game and seat
+        need no lock of their own.
+    */
+    private void process(Connection conn) {
+        for (int n = 0; n < LINES_PER_TURN; n++) {
+            String line;
+            boolean leaving = false;
+            synchronized (conn) {
+                line = conn.disconnected ? null : conn.lines.poll();
+                if (line == null) {
+                    conn.scheduled = false;
+                    leaving = conn.disconnected;
+                }
+            }
+            if (line == null) {
+                if (leaving) {
+                    leave(conn);
+                }
+                return;
+            }
+            String reply;
+            try {
+                reply = handle(conn, line);
+            }
+            catch (RuntimeException e) {
+                reply = "ERR "+e;
+            }
+            send(conn, reply);
+        }
+        // Give other connections a turn on this worker
+        workers.execute(() -> process(conn));
+    }
+
+    private String handle(Connection conn, String line) {
+        String[] words = line.trim().split(" +");
+        switch (words[0].toUpperCase()) {
+            case "NEW":
+                return newGame(conn, words);
+            case "JOIN":
+                return join(conn, words);
+            case "RACK":
+                return (conn.session == null) ? "ERR not in a game" : rack(conn);
+            case "PLAY":
+                return play(conn, words);
+            case "PASS":
+                return pass(conn);
+            case "STATE":
+                return state(conn);
+            case "QUIT":
+                leave(conn);
+                closeAfterReplies(conn);
+                return "OK"; // send closes the connection once this is written
+            default:
+                return "ERR unknown command "+words[0];
+        }
+    }
+
+    private String newGame(Connection conn, String[] words) {
+        if (conn.session != null) {
+            return "ERR already in a game";
+        }
+        if (words.length < 2 || words.length > 3) {
+            return "ERR usage: NEW <players> [seed]";
+        }
+        int numPlayers;
+        long seed;
+        try {
+            numPlayers = Integer.parseInt(words[1]);
+            seed = (words.length > 2) ? Long.parseLong(words[2]) : Seeds.mix(nextSeed.getAndIncrement());
+        }
+        catch (NumberFormatException e) {
+            return "ERR bad number";
+        }
+        if (numPlayers < 1 || numPlayers > MAX_PLAYERS) {
+            return "ERR players must be 1 to "+MAX_PLAYERS;
+        }
+        Session session = new Session();
+        session.id = nextId.incrementAndGet();
+        session.game = new Game(lexicon, numPlayers, new SplittableRandom(seed));
+        session.seats = new Connection[numPlayers];
+        synchronized (session) {
+            session.seats[0] = conn;
+            session.joined = 1;
+            conn.session = session;
+            conn.seat = 0;
+            sessions.put(session.id, session);
+            return "OK "+session.id+" 0 "+rack(conn);
+        }
+    }
+
+    private String join(Connection conn, String[] words) {
+        if (conn.session != null) {
+            return "ERR already in a game";
+        }
+        if (words.length != 2) {
+            return "ERR usage: JOIN <game>";
+        }
+        Session session;
+        try {
+            session = sessions.get(Integer.parseInt(words[1]));
+        }
+        catch (NumberFormatException e) {
+            return "ERR bad number";
+        }
+        if (session == null) {
+            return "ERR no such game";
+        }
+        synchronized (session) {
+            if (session.over || session.joined == session.seats.length) {
+                return "ERR game is full";
+            }
+            int seat = session.joined++;
+            session.seats[seat] = conn;
+            conn.session = session;
+            conn.seat = seat;
+            return "OK "+session.id+" "+seat+" "+rack(conn);
+        }
+    }
+
+    private String play(Connection conn, String[] words) {
+        Session session = conn.session;
+        if (words.length != 5) {
+            return "ERR usage: PLAY <direction> <col> <row> <word>";
+        }
+        Board.Direction direction;
+        int col;
+        int row;
+        try {
+            direction = Board.Direction.valueOf(words[1].toUpperCase());
+            col = Integer.parseInt(words[2]);
+            row = Integer.parseInt(words[3]);
+        }
+        catch (IllegalArgumentException e) {
+            return "ERR bad direction or number";
+        }
+        char[] word = words[4].toCharArray();
+        if (word.length < 2 || word.length > Board.BOARD_WIDTH) {
+            return "ERR bad word length";
+        }
+        if (session == null) {
+            return "ERR not in a game";
+        }
+        synchronized (session) {
+            String refusal = checkTurn(conn, session);
+            if (refusal != null) {
+                return refusal;
+            }
+            Board board = session.game.board;
+            List<Board.Tile> tiles = new ArrayList<Board.Tile>();
+            for (int i = 0; i < word.length; i++) {
+                int c = col + i * Board.colStep(direction);
+                int r = row + i * Board.rowStep(direction);
+                if (!Character.isLetter(word[i]) || !board.isValid(c, r)) {
+                    return "ERR word leaves the board";
+                }
+                if (board.isEmpty(c, r)) {
+                    tiles.add(new Board.Tile(word[i], c, r));
+                }
+                else if (board.getCharAt(c, r) != word[i]) {
+                    return "ERR word doesn't match the board at "+c+","+r;
+                }
+            }
+            if (tiles.isEmpty()) {
+                return "ERR no tiles placed";
+            }
+            int score = session.game.makeMove(tiles, conn.seat);
+            if (score < 0) {
+                return "ERR illegal play";
+            }
+            session.passes = 0;
+            endTurn(session);
+            return "OK "+score+" "+rack(conn)+(session.over ? " OVER" : "");
+        }
+    }
+
+    private String pass(Connection conn) {
+        Session session = conn.session;
+        if (session == null) {
+            return "ERR not in a game";
+        }
+        synchronized (session) {
+            String refusal = checkTurn(conn, session);
+            if (refusal != null) {
+                return refusal;
+            }
+            session.passes++;
+            endTurn(session);
+            return "OK 0 "+rack(conn)+(session.over ? " OVER" : "");
+        }
+    }
+
+    // Why the connection can't move now, or null if it can. Holds the session lock.
+    private static String checkTurn(Connection conn, Session session) {
+        if (session.over) {
+            return "ERR game over";
+        }
+        if (session.joined < session.seats.length) {
+            return "ERR waiting for players";
+        }
+        if (session.turn != conn.seat) {
+            return "ERR not your turn";
+        }
+        return null;
+    }
+
+    private static void endTurn(Session session) {
+        Game game = session.game;
+        session.turn = (session.turn + 1) % game.numPlayers;
+        if (game.isOver() || session.passes >= 2 * game.numPlayers) {
+            session.over = true;
+        }
+    }
+
+    private String state(Connection conn) {
+        Session session = conn.session;
+        if (session == null) {
+            return "ERR not in a game";
+        }
+        synchronized (session) {
+            Game game = session.game;
+            StringBuilder sb = new StringBuilder("OK ");
+            sb.append(session.turn).append(' ');
+            sb.append(session.over ? "OVER" : (session.joined < session.seats.length) ? "WAITING" : "PLAYING");
+            for (int p = 0; p < game.numPlayers; p++) {
+                sb.append((p == 0) ? ' ' : ',').append(game.playerScores[p]);
+            }
+            sb.append(' ');
+            for (int row = 0; row < Board.BOARD_WIDTH; row++) {
+                for (int col = 0; col < Board.BOARD_WIDTH; col++) {
+                    sb.append(game.board.getCharAt(col, row));
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private static String rack(Connection conn) {
+        char[] rack = conn.session.game.playerRacks[conn.seat];
+        StringBuilder sb = new StringBuilder(Game.NUM_TILES_IN_RACK);
+        for (int i = 0; i < Game.NUM_TILES_IN_RACK; i++) {
+            sb.append((i < rack.length && rack[i] != '\0') ? rack[i] : Board.EMT);
+        }
+        return sb.toString();
+    }
+
+    // Gives up the connection's seat; the game ends and is dropped once nobody is left in it
+    private void leave(Connection conn) {
+        Session session = conn.session;
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            session.over = true;
+            session.seats[conn.seat] = null;
+            boolean empty = true;
+            for (Connection other : session.seats) {
+                if (other != null) {
+                    empty = false;
+                }
+            }
+            if (empty) {
+                sessions.remove(session.id);
+            }
+        }
+        conn.session = null;
+    }
+
+    /*
+        Writes a reply. If nothing is already waiting and the socket takes it
+        all, that's the end of it; otherwise it's queued for the selector.
+    */
+    private void send(Connection conn, String reply) {
+        ByteBuffer bytes = ByteBuffer.wrap((reply+"\n").getBytes(StandardCharsets.US_ASCII));
+        boolean close;
+        synchronized (conn) {
+            if (conn.disconnected) {
+                return;
+            }
+            if (conn.output.isEmpty()) {
+                try {
+                    conn.channel.write(bytes);
+                }
+                catch (IOException e) {
+                    conn.closing = true;
+                }
+            }
+            if (bytes.hasRemaining() && !conn.closing) {
+                conn.output.add(bytes);
+                pendingWrites.add(conn);
+                selector.wakeup();
+                return;
+            }
+            close = conn.closing && conn.output.isEmpty();
+        }
+        if (close) {
+            disconnect(conn);
+        }
+    }
+
+    // Called on the selector thread when the socket has room again
+    private void flush(Connection conn) {
+        boolean close;
+        synchronized (conn) {
+            try {
+                while (!conn.output.isEmpty()) {
+                    ByteBuffer bytes = conn.output.peek();
+                    conn.channel.write(bytes);
+                    if (bytes.hasRemaining()) {
+                        return;
+                    }
+                    conn.output.poll();
+                }
+                conn.key.interestOps(SelectionKey.OP_READ);
+            }
+            catch (IOException e) {
+                conn.closing = true;
+                conn.output.clear();
+            }
+            close = conn.closing;
+        }
+        if (close) {
+            disconnect(conn);
+        }
+    }
+
+    // The connection is closed as soon as replies already queued are written
+    private void closeAfterReplies(Connection conn) {
+        synchronized (conn) {
+            conn.closing = true;
+            conn.lines.clear();
+        }
+    }
+
+    /*
+        Closes the socket at once. Leaving the game is left to the
+        connection's own run of process, so it can't race with a line that
+        is being handled.
+    */
+    private void disconnect(Connection conn) {
+        boolean schedule;
+        synchronized (conn) {
+            if (conn.disconnected) {
+                return;
+            }
+            conn.disconnected = true;
+            conn.closing = true;
+            conn.lines.clear();
+            conn.output.clear();
+            schedule = !conn.scheduled;
+            conn.scheduled = true;
+        }
+        conn.key.cancel();
+        try {
+            conn.channel.close();
+        }
+        catch (IOException e) {
+            // Nothing more to do with it
+        }
+        if (schedule && running) {
+            workers.execute(() -> process(conn));
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java GameServer <lexicon> [port] [threads]");
+            return;
+        }
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Lexicon lexicon;
+        try {
+            lexicon = LexiconRegistry.get(args[0]);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't load "+args[0]+": "+e.getMessage());
+            return;
+        }
+        try {
+            GameServer server = new GameServer(lexicon, port, threads);
+            System.out.println("Serving games on port "+server.getPort()+" with "+threads+" worker threads");
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't listen on port "+port+": "+e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+    Works out the best plays for a position in the background so a front
+    end never blocks on it. Each call to update snapshots the game and
+    starts over on the snapshot, cancelling whatever the last call started.
+
+    Results arrive in stages, each better informed than the one before:
+    plays by score straight away, then simulated with more and more
+    rollouts, or once the bag is empty in a two-player game, the endgame
+    solver's play with longer and longer budgets. The solver is only exact
+    for short endgames; past its budget it rates plays by a depth-limited
+    search, and Hints.isExact tells the two apart. Every stage is passed to
+    the listener through the given executor (Platform::runLater for
+    JavaFX); stages from a position that has since been replaced are
+    dropped, both before they are handed over and again when they run.
+
+    Thread safe. update and cancel only copy the game and swap a future,
+    so they are cheap enough for the UI thread.
+*/
+public class HintService {
+    private static final int[] SIM_ROLLOUTS = { 50, 200, 800 };
+    private static final long[] ENDGAME_MILLIS = { 100, 1000, 5000 };
+    private static final int SIM_CANDIDATES = 10;
+    private static final int SIM_BATCH = 8;
+
+    public enum Stage { SCORE, SIMULATION, ENDGAME }
+
+    public static class Hint {
+        private Move move;
+        private int score;
+        private double value;
+
+        public Move getMove() {
+            return this.move;
+        }
+
+        public int getScore() {
+            return this.score;
+        }
+
+        // What the stage rates the play at: its score, simulated spread or endgame spread
+        public double getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            return move.getWordString()+" "+move.getStartCol()+","+move.getStartRow()+" "+score
+                    +((value != score) ? String.format(" (%.1f)", value) : "");
+        }
+    }
+
+    public static class Hints {
+        private long position;
+        private int playerIndex;
+        private Stage stage;
+        private boolean last;
+        private boolean exact;
+        private List<Hint> hints;
+
+        // Counts calls to update, so a front end can match hints to what it showed
+        public long getPosition() {
+            return this.position;
+        }
+
+        public int getPlayerIndex() {
+            return this.playerIndex;
+        }
+
+        public Stage getStage() {
+            return this.stage;
+        }
+
+        // True for the final stage for this position
+        public boolean isLast() {
+            return this.last;
+        }
+
+        // True if the values are final spreads with best play, proven by a complete endgame search
+        public boolean isExact() {
+            return this.exact;
+        }
+
+        // Best first
+        public List<Hint> getHints() {
+            return this.hints;
+        }
+    }
+
+    private Lexicon lexicon;
+    private int maxHints;
+    private Consumer<Hints> listener;
+    private Executor delivery;
+    private ExecutorService worker;
+    private Simulator simulator;
+    private MoveGenerator generator;
+    private EndgameSolver solver;
+    private AtomicLong position = new AtomicLong();
+    private Future<?> running;
+
+    public HintService(Lexicon lexicon, int maxHints, Consumer<Hints> listener, Executor delivery) {
+        this.lexicon = lexicon;
+        this.maxHints = maxHints;
+        this.listener = listener;
+        this.delivery = delivery;
+        // One daemon thread computes; the simulator leaves a core for the UI
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "HintService");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.simulator = new Simulator(lexicon, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        this.simulator.setBatchSize(SIM_BATCH); // Short rounds, so a cancel takes effect soon
+        this.generator = new MoveGenerator(lexicon);
+        this.solver = new EndgameSolver(lexicon);
+    }
+
+    /*
+        Starts on the given player's hints for the game as it is now. The game
+        is copied here, so the caller can carry on changing it.
+    */
+    public synchronized void update(Game game, int playerIndex) {
+        if (game.lexicon != lexicon) {
+            throw new IllegalArgumentException("Game uses a different lexicon");
+        }
+        long id = position.incrementAndGet();
+        if (running != null) {
+            running.cancel(true);
+        }
+        // Rollouts seed their own copies, so the snapshot's bag is never drawn from
+        Game snapshot = new Game(game, new SplittableRandom());
+        running = worker.submit(() -> compute(snapshot, playerIndex, id));
+    }
+
+    // Drops any work in progress and any hints not yet delivered
+    public synchronized void cancel() {
+        position.incrementAndGet();
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        worker.shutdownNow();
+        simulator.shutdown();
+    }
+
+    private boolean isStale(long id) {
+        return position.get() != id || Thread.currentThread().isInterrupted();
+    }
+
+    private void compute(Game game, int playerIndex, long id) {
+        List<Move> moves = new ArrayList<Move>();
+        generator.generate(game.board, game.playerRacks[playerIndex], moves);
+        for (Move move : moves) {
+            move.setScore(game.board.scoreMove(move));
+        }
+        moves.sort((a, b) -> b.getScore() - a.getScore());
+        boolean endgame = game.numPlayers == 2 && game.getNumTiles() == 0;
+        boolean more = moves.size() > 1;
+
+        List<Hint> byScore = new ArrayList<Hint>();
+        for (int i = 0; i < moves.size() && i < maxHints; i++) {
+            byScore.add(hint(moves.get(i), moves.get(i).getScore()));
+        }
+        publish(id, playerIndex, Stage.SCORE, !more, false, byScore);
+        if (!more) {
+            return;
+        }
+
+        if (endgame) {
+            for (int i = 0; i < ENDGAME_MILLIS.length && !isStale(id); i++) {
+                solver.setTimeBudget(ENDGAME_MILLIS[i]);
+                EndgameSolver.Solution solution = solver.solve(game, playerIndex);
+                boolean last = solution.isExact() || i == ENDGAME_MILLIS.length - 1;
+                publish(id, playerIndex, Stage.ENDGAME, last, solution.isExact(), endgameHints(solution, byScore));
+                if (last) {
+                    break;
+                }
+            }
+            return;
+        }
+
+        List<Move> candidates = new ArrayList<Move>(moves.subList(0, Math.min(SIM_CANDIDATES, moves.size())));
+        for (int i = 0; i < SIM_ROLLOUTS.length && !isStale(id); i++) {
+            List<Simulator.Result> results = simulator.simulate(game, playerIndex, candidates, SIM_ROLLOUTS[i]);
+            List<Hint> hints = new ArrayList<Hint>();
+            for (Simulator.Result result : results) {
+                if (hints.size() == maxHints) break;
+                hints.add(hint(result.getMove(), result.getMean()));
+            }
+            publish(id, playerIndex, Stage.SIMULATION, i == SIM_ROLLOUTS.length - 1, false, hints);
+        }
+    }
+
+    // The solver's play first, then the rest by score
+    private List<Hint> endgameHints(EndgameSolver.Solution solution, List<Hint> byScore) {
+        List<Hint> hints = new ArrayList<Hint>();
+        Move best = solution.getBestMove();
+        if (best != null) {
+            hints.add(hint(best, solution.getSpread()));
+        }
+        for (Hint hint : byScore) {
+            if (hints.size() == maxHints) break;
+            if (best == null || !samePlay(hint.move, best)) {
+                hints.add(hint);
+            }
+        }
+        return hints;
+    }
+
+    // The solver generates its own moves, so compare what they place rather than the objects
+    private static boolean samePlay(Move a, Move b) {
+        return a.getDirection() == b.getDirection() && a.getStartCol() == b.getStartCol()
+                && a.getStartRow() == b.getStartRow() && a.getPlaced() == b.getPlaced()
+                && a.getWordString().equals(b.getWordString());
+    }
+
+    private static Hint hint(Move move, double value) {
+        Hint hint = new Hint();
+        hint.move = move;
+        hint.score = move.getScore();
+        hint.value = value;
+        return hint;
+    }
+
+    private void publish(long id, int playerIndex, Stage stage, boolean last, boolean exact, List<Hint> list) {
+        if (isStale(id)) {
+            return;
+        }
+        Hints hints = new Hints();
+        hints.position = id;
+        hints.playerIndex = playerIndex;
+        hints.stage = stage;
+        hints.last = last;
+        hints.exact = exact;
+        hints.hints = list;
+        delivery.execute(() -> {
+            if (position.get() == id) {
+                listener.accept(hints);
+            }
+        });
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/*
+    Value of every possible leave, the tiles a play keeps on the rack. With
+    a six-tile rack a leave has at most five tiles, and there are only
+    C(32, 5) = 201,376 multisets of up to five of the 27 tile kinds, so every
+    one gets a slot.
+
+    Slots are numbered with the combinatorial number system, which is a
+    minimal perfect hash: the tiles of a leave of size m, sorted by kind as
+    k1 <= k2 <= ... <= km, become the strictly increasing c_i = k_i + i - 1,
+    and the leave's slot is the number of leaves smaller than m plus the
+    sum of C(c_i, i). No keys are stored and nothing collides.
+
+    Values are hundredths of a point in one short per slot. Compiled file
+    format (little-endian, see LeaveTableGenerator):
+        ints MAGIC, FORMAT_VERSION, NUM_KINDS, MAX_LEAVE, NUM_LEAVES,
+        followed by NUM_LEAVES shorts.
+    Like a compiled Lexicon, the file is mapped and read in place.
+*/
+public class LeaveTable {
+    public static final int NUM_KINDS = TileBag.NUM_KINDS;
+    public static final int MAX_LEAVE = Game.NUM_TILES_IN_RACK - 1;
+    public static final int NUM_LEAVES;
+
+    private static final int MAGIC = 0x564C5848; // "HXLV"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_INTS = 5;
+    private static final float SCALE = 100f;
+
+    // BINOMIAL[n][k] = C(n, k) for the c_i values a leave can produce
+    private static final int[][] BINOMIAL = new int[NUM_KINDS + MAX_LEAVE][MAX_LEAVE + 1];
+    // First slot of the leaves of each size
+    private static final int[] SIZE_OFFSETS = new int[MAX_LEAVE + 2];
+
+    static {
+        for (int n = 0; n < BINOMIAL.length; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= MAX_LEAVE && k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + ((k < n) ? BINOMIAL[n - 1][k] : 0);
+            }
+        }
+        for (int size = 0; size <= MAX_LEAVE; size++) {
+            // Multisets of size tiles from NUM_KINDS kinds
+            SIZE_OFFSETS[size + 1] = SIZE_OFFSETS[size] + BINOMIAL[NUM_KINDS + size - 1][size];
+        }
+        NUM_LEAVES = SIZE_OFFSETS[MAX_LEAVE + 1];
+    }
+
+    private ShortBuffer values;
+
+    private LeaveTable(ShortBuffer values) {
+        this.values = values;
+    }
+
+    // Table from values in points, indexed by slot
+    public static LeaveTable fromValues(float[] points) {
+        if (points.length != NUM_LEAVES) {
+            throw new IllegalArgumentException("Leave table needs "+NUM_LEAVES+" values");
+        }
+        short[] values = new short[NUM_LEAVES];
+        for (int i = 0; i < NUM_LEAVES; i++) {
+            float scaled = Math.round(points[i] * SCALE);
+            values[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+        }
+        return new LeaveTable(ShortBuffer.wrap(values));
+    }
+
+    // Maps a compiled table without copying it onto the heap
+    public static LeaveTable load(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+                FileChannel channel = file.getChannel()) {
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            bytes.order(ByteOrder.LITTLE_ENDIAN);
+            if (bytes.limit() < 4 * HEADER_INTS || bytes.getInt(0) != MAGIC) {
+                throw new IOException(filename+" is not a leave table.");
+            }
+            if (bytes.getInt(4) != FORMAT_VERSION) {
+                throw new IOException(filename+" has unsupported format version "+bytes.getInt(4)+".");
+            }
+            if (bytes.getInt(8) != NUM_KINDS || bytes.getInt(12) != MAX_LEAVE || bytes.getInt(16) != NUM_LEAVES) {
+                throw new IOException(filename+" was built for a different rack size or tile set.");
+            }
+            if (bytes.limit() < 4 * HEADER_INTS + 2 * NUM_LEAVES) {
+                throw new IOException(filename+" is truncated.");
+            }
+            bytes.position(4 * HEADER_INTS);
+            ShortBuffer shorts = bytes.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            shorts.limit(NUM_LEAVES);
+            return new LeaveTable(shorts);
+        }
+    }
+
+    public void writeTo(String filename) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(4 * HEADER_INTS + 2 * NUM_LEAVES);
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putInt(MAGIC);
+        bytes.putInt(FORMAT_VERSION);
+        bytes.putInt(NUM_KINDS);
+        bytes.putInt(MAX_LEAVE);
+        bytes.putInt(NUM_LEAVES);
+        for (int i = 0; i < NUM_LEAVES; i++) {
+            bytes.putShort(values.get(i));
+        }
+        bytes.flip();
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw");
+                FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    // Value in points of the leave in the given slot
+    public float getValue(int index) {
+        return values.get(index) / SCALE;
+    }
+
+    /*
+        Value of what a play leaves on the rack, or 0 if it keeps six tiles
+        (a pass). The rack is given as counts from countRack, so a turn
+        counts its rack once and then scores every candidate without
+        allocating.
+    */
+    public float getValue(int[] rackCounts, Move move) {
+        int index = index(rackCounts, move);
+        return (index < 0) ? 0 : getValue(index);
+    }
+
+    // Score plus leave value: what the play is worth while there are tiles to draw
+    public float getEquity(int[] rackCounts, Move move, int score) {
+        return score + getValue(rackCounts, move);
+    }
+
+    /*
+        Slot of a leave given as a count per tile kind, or -1 if it holds more
+        than MAX_LEAVE tiles.
+    */
+    public static int index(int[] counts) {
+        int rank = 0;
+        int i = 0;
+        for (int kind = 0; kind < NUM_KINDS; kind++) {
+            for (int k = 0; k < counts[kind]; k++) {
+                if (i == MAX_LEAVE) {
+                    return -1;
+                }
+                rank += BINOMIAL[kind + i][i + 1];
+                i++;
+            }
+        }
+        return SIZE_OFFSETS[i] + rank;
+    }
+
+    // Count per tile kind of a rack, into the given array
+    public static int[] countRack(char[] rack, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (char tile : rack) {
+            if (tile != Board.EMT && tile != '\0') {
+                counts[TileBag.kindOf(tile)]++;
+            }
+        }
+        return counts;
+    }
+
+    // Slot of the tiles left on the rack after a play, or -1 if none were played
+    public static int index(char[] rack, Move move) {
+        return index(countRack(rack, new int[NUM_KINDS]), move);
+    }
+
+    /*
+        Same, for a rack given as counts. The play's tiles are taken off the
+        counts to find the slot and put back before returning.
+    */
+    public static int index(int[] rackCounts, Move move) {
+        char[] word = move.getWord();
+        for (int i = 0; i < word.length; i++) {
+            if (move.isPlaced(i)) {
+                rackCounts[placedKind(word[i])]--;
+            }
+        }
+        int index = index(rackCounts);
+        for (int i = 0; i < word.length; i++) {
+            if (move.isPlaced(i)) {
+                rackCounts[placedKind(word[i])]++;
+            }
+        }
+        return index;
+    }
+
+    // A blank is placed as its letter in lower case
+    private static int placedKind(char letter) {
+        return TileBag.kindOf((letter >= 'a' && letter <= 'z') ? Board.BLK : letter);
+    }
+
+    // Number of tiles in the leave in a given slot
+    public static int sizeOf(int index) {
+        int size = 0;
+        while (index >= SIZE_OFFSETS[size + 1]) {
+            size++;
+        }
+        return size;
+    }
+}
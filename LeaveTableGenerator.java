@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+    Builds a LeaveTable from self-play. A leave is worth what its owner
+    scores on their next turn, compared with the average next-turn score:
+    every play made while the bag can still refill the rack adds that
+    player's following score to the statistics of the leave it kept.
+
+    Games run on a fixed thread pool and each thread keeps its own sums per
+    leave, merged once every game is done. Most five-tile leaves are rare,
+    so a leave's estimate is blended with the average of the leaves one
+    tile smaller, weighted by how often it was seen; leaves never seen get
+    that average outright.
+
+    Each iteration plays with the table from the one before (greedy play on
+    the first), so the statistics come from play that already values leaves.
+
+    Usage: java LeaveTableGenerator <lexicon> <output> [games] [threads] [seed] [iterations]
+*/
+public class LeaveTableGenerator {
+    private static final int MAX_TURNS = 200;
+    private static final int GAMES_PER_TASK = 16;
+    private static final double PRIOR_WEIGHT = 30; // Samples a leave needs before its own mean counts as much as the prior
+
+    // Statistics owned by one pool thread
+    private static class Worker extends MoveWorker {
+        private double[] sums = new double[LeaveTable.NUM_LEAVES];
+        private long[] counts = new long[LeaveTable.NUM_LEAVES];
+
+        private Worker(Lexicon lexicon) {
+            super(lexicon);
+        }
+
+        private void reset() {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = 0;
+                counts[i] = 0;
+            }
+        }
+    }
+
+    private Lexicon lexicon;
+    private ExecutorService pool;
+    private ConcurrentLinkedQueue<Worker> allWorkers = new ConcurrentLinkedQueue<Worker>();
+    private ThreadLocal<Worker> workers;
+    private long samples;
+
+    public LeaveTableGenerator(Lexicon lexicon, int threads) {
+        this.lexicon = lexicon;
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.workers = MoveWorker.perThread(() -> new Worker(this.lexicon), allWorkers);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Leaves recorded by the last call to generate
+    public long getSamples() {
+        return samples;
+    }
+
+    /*
+        Plays numGames two-player games and returns the table they imply.
+        Players choose by equity with current, or greedily if it is null.
+        Game i uses seed Seeds.mix(seed + i), as in Tournament.
+    */
+    public LeaveTable generate(long numGames, long seed, LeaveTable current) throws InterruptedException {
+        for (Worker worker : allWorkers) {
+            worker.reset();
+        }
+        Strategy strategy = (current == null) ? Strategy.GREEDY : Strategy.equity(current);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (long first = 0; first < numGames; first += GAMES_PER_TASK) {
+            final long from = first;
+            final long to = Math.min(numGames, first + GAMES_PER_TASK);
+            tasks.add(() -> {
+                Worker worker = workers.get();
+                for (long i = from; i < to; i++) {
+                    playGame(worker, strategy, Seeds.mix(seed + i));
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        // All tasks are done, so the per-thread statistics are no longer written
+        double[] sums = new double[LeaveTable.NUM_LEAVES];
+        long[] counts = new long[LeaveTable.NUM_LEAVES];
+        for (Worker worker : allWorkers) {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += worker.sums[i];
+                counts[i] += worker.counts[i];
+            }
+        }
+        return LeaveTable.fromValues(estimate(sums, counts));
+    }
+
+    private void playGame(Worker worker, Strategy strategy, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        Game game = new Game(lexicon, 2, rng.split());
+        // Slot of the leave each player kept on their last turn, or -1
+        int[] pending = { -1, -1 };
+
+        int player = 0;
+        int passes = 0;
+        for (int turn = 0; turn < MAX_TURNS && !game.isOver() && passes < 4; turn++) {
+            char[] rack = game.playerRacks[player];
+            worker.moves.clear();
+            worker.generator.generate(game.board, rack, worker.moves);
+            Move move = strategy.chooseMove(game, player, worker.moves, rng);
+            int score = (move == null) ? 0 : game.board.scoreMove(move);
+
+            if (pending[player] >= 0) {
+                worker.sums[pending[player]] += score;
+                worker.counts[pending[player]]++;
+            }
+            pending[player] = -1;
+            if (move == null) {
+                passes++;
+            }
+            else {
+                // Only leaves that get topped back up to a full rack are comparable
+                if (game.getNumTiles() >= move.getNumTilesPlaced()) {
+                    pending[player] = LeaveTable.index(rack, move);
+                }
+                game.applyMove(move, player);
+                passes = 0;
+            }
+            player = 1 - player;
+        }
+    }
+
+    /*
+        Value of every leave from the per-leave score sums: its mean
+        next-turn score above the overall mean, shrunk towards the average
+        value of the leaves one tile smaller.
+    */
+    private float[] estimate(double[] sums, long[] counts) {
+        double total = 0;
+        long n = 0;
+        for (int i = 0; i < sums.length; i++) {
+            total += sums[i];
+            n += counts[i];
+        }
+        samples = n;
+        double mean = (n == 0) ? 0 : total / n;
+
+        float[] values = new float[LeaveTable.NUM_LEAVES];
+        int[] leave = new int[LeaveTable.NUM_KINDS];
+        for (int size = 0; size <= LeaveTable.MAX_LEAVE; size++) {
+            estimateSize(leave, 0, size, sums, counts, mean, values);
+        }
+        return values;
+    }
+
+    // Fills values for every leave of remaining more tiles, drawn from kinds >= kind
+    private static void estimateSize(int[] leave, int kind, int remaining,
+            double[] sums, long[] counts, double mean, float[] values) {
+        if (remaining == 0) {
+            int index = LeaveTable.index(leave);
+            double prior = 0;
+            int parents = 0;
+            for (int k = 0; k < leave.length; k++) {
+                if (leave[k] > 0) {
+                    leave[k]--;
+                    prior += values[LeaveTable.index(leave)];
+                    leave[k]++;
+                    parents++;
+                }
+            }
+            prior = (parents == 0) ? 0 : prior / parents;
+            long seen = counts[index];
+            double own = (seen == 0) ? 0 : sums[index] / seen - mean;
+            values[index] = (float) ((seen * own + PRIOR_WEIGHT * prior) / (seen + PRIOR_WEIGHT));
+            return;
+        }
+        for (int k = kind; k < leave.length; k++) {
+            leave[k]++;
+            estimateSize(leave, k, remaining - 1, sums, counts, mean, values);
+            leave[k]--;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java LeaveTableGenerator <lexicon> <output> [games] [threads] [seed] [iterations]");
+            return;
+        }
+        long games = (args.length > 2) ? Long.parseLong(args[2]) : 10000;
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : 1;
+        int iterations = (args.length > 5) ? Integer.parseInt(args[5]) : 2;
+
+        Lexicon lexicon;
+        try {
+            lexicon = LexiconRegistry.get(args[0]);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't load "+args[0]+": "+e.getMessage());
+            return;
+        }
+
+        LeaveTableGenerator generator = new LeaveTableGenerator(lexicon, threads);
+        LeaveTable table = null;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long start = System.nanoTime();
+            table = generator.generate(games, seed + iteration * games, table);
+            System.out.println("Iteration "+(iteration + 1)+": "+games+" games, "+generator.getSamples()
+                    +" leaves in "+((System.nanoTime() - start)/1000000)+" ms");
+        }
+        generator.shutdown();
+
+        try {
+            table.writeTo(args[1]);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't write "+args[1]+": "+e.getMessage());
+            return;
+        }
+        System.out.println("Wrote "+LeaveTable.NUM_LEAVES+" leave values -> "+args[1]);
+    }
+}
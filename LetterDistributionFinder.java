@@ -1,68 +1,379 @@
-import java.io.File;  // Import the File class
-import java.io.FileNotFoundException;  // Import this class to handle errors
-import java.util.Scanner; // Import the Scanner class to read text files
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+/*
+    Letter statistics of a word corpus, used to derive the tile set.
+
+    Each word list is memory-mapped and cut into chunks that are scanned in
+    parallel straight from the mapped bytes; no Strings are created. A word
+    is a run of ASCII letters (either case), so one word per line and
+    whitespace separated lists both work. A chunk owns the words that start
+    inside it. Words longer than the board is wide can never be played and
+    are only counted as skipped.
+
+    For every word length the analyser counts words, letters, bigrams
+    (adjacent letter pairs within a word) and letters by position. The
+    candidate tile distribution weights letters as the original did: for
+    each length in the chosen range, a letter's occurrences per word,
+    summed over the lengths and divided by the sum of the lengths.
+
+    Usage: java LetterDistributionFinder [-lengths 4-8] [-tiles 75] [-blanks 2] [-threads n] <word list>...
+*/
 public class LetterDistributionFinder {
-    public ArrayList<String> words;
+    public static final int NUM_LETTERS = 26;
+    public static final int MAX_LENGTH = Board.BOARD_WIDTH;
+
+    private static final int MIN_CHUNK = 1 << 16;
+
+    // Counts for one part of the corpus; merged into one at the end
+    public static class Stats {
+        private long[] words = new long[MAX_LENGTH + 1];
+        private long[][] letters = new long[MAX_LENGTH + 1][NUM_LETTERS];
+        private long[][] bigrams = new long[MAX_LENGTH + 1][NUM_LETTERS * NUM_LETTERS];
+        private long[][][] positions = new long[MAX_LENGTH + 1][MAX_LENGTH][NUM_LETTERS];
+        private long skipped;
 
-    // Constuctor adds words from list
-    public LetterDistributionFinder(String filename) {
-        Scanner sc;
-        try{
-            sc = new Scanner(new File(filename));
+        // Word of length letters, as letter codes 0-25
+        private void addWord(int[] codes, int length) {
+            if (length > MAX_LENGTH) {
+                skipped++;
+                return;
+            }
+            words[length]++;
+            long[] letterCounts = letters[length];
+            long[] bigramCounts = bigrams[length];
+            long[][] positionCounts = positions[length];
+            for (int i = 0; i < length; i++) {
+                int code = codes[i];
+                letterCounts[code]++;
+                positionCounts[i][code]++;
+                if (i > 0) {
+                    bigramCounts[codes[i - 1] * NUM_LETTERS + code]++;
+                }
+            }
         }
-        catch (FileNotFoundException e) {
-            System.out.println("ERROR: "+filename+" doesn't exist.");
-            return;
+
+        private void add(Stats other) {
+            skipped += other.skipped;
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                words[length] += other.words[length];
+                for (int c = 0; c < NUM_LETTERS; c++) {
+                    letters[length][c] += other.letters[length][c];
+                }
+                for (int b = 0; b < NUM_LETTERS * NUM_LETTERS; b++) {
+                    bigrams[length][b] += other.bigrams[length][b];
+                }
+                for (int pos = 0; pos < MAX_LENGTH; pos++) {
+                    for (int c = 0; c < NUM_LETTERS; c++) {
+                        positions[length][pos][c] += other.positions[length][pos][c];
+                    }
+                }
+            }
+        }
+
+        public long getWords(int length) {
+            return words[length];
+        }
+
+        public long getTotalWords() {
+            long total = 0;
+            for (long count : words) {
+                total += count;
+            }
+            return total;
+        }
+
+        // Words too long for the board
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getLetterCount(int length, int letter) {
+            return letters[length][letter];
         }
-        words = new ArrayList<String>();
-        while (sc.hasNext()) {
-            words.add(sc.next());
+
+        // Times first is directly followed by second in words of the given length
+        public long getBigramCount(int length, int first, int second) {
+            return bigrams[length][first * NUM_LETTERS + second];
+        }
+
+        public long getPositionCount(int length, int pos, int letter) {
+            return positions[length][pos][letter];
+        }
+
+        // A letter's share of all letters in words of the given lengths
+        public double getLetterFrequency(int minLength, int maxLength, int letter) {
+            long count = 0;
+            long total = 0;
+            for (int length = minLength; length <= maxLength; length++) {
+                count += letters[length][letter];
+                total += words[length] * length;
+            }
+            return (total == 0) ? 0 : (double) count / total;
         }
     }
 
-    public int[] findDistribution() {
-        int[] distribution = new int[26];
-        for (String word : words) {
-            int count = 0;
-            for (char letter : word.toCharArray()) {
-                int index = letter - 'A';
-                distribution[index]++;
+    /*
+        Scans the word lists on a pool of the given size and returns the
+        merged counts.
+    */
+    public static Stats analyse(List<String> filenames, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Callable<Stats>> tasks = new ArrayList<Callable<Stats>>();
+            for (String filename : filenames) {
+                MappedByteBuffer bytes;
+                try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+                        FileChannel channel = file.getChannel()) {
+                    if (channel.size() > Integer.MAX_VALUE) {
+                        throw new IOException(filename+" is larger than 2 GiB.");
+                    }
+                    bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                int size = bytes.limit();
+                int chunk = Math.max(MIN_CHUNK, size / (4 * threads) + 1);
+                for (int start = 0; start < size; start += chunk) {
+                    final int from = start;
+                    final int to = Math.min(size, start + chunk);
+                    tasks.add(() -> scan(bytes, from, to));
+                }
+            }
+
+            Stats total = new Stats();
+            for (Future<Stats> future : pool.invokeAll(tasks)) {
+                try {
+                    total.add(future.get());
+                }
+                catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted");
+                }
             }
+            return total;
+        }
+        finally {
+            pool.shutdown();
         }
-        return distribution;
     }
 
-    public static void main(String[] args) {
-        LetterDistributionFinder ref;
+    // Counts the words starting in [from, to), reading past to to finish the last one
+    private static Stats scan(MappedByteBuffer bytes, int from, int to) {
+        Stats stats = new Stats();
+        int[] codes = new int[MAX_LENGTH + 1];
+        int size = bytes.limit();
+        int i = from;
+        // A word running into the chunk belongs to the chunk before
+        if (i > 0 && letterCode(bytes.get(i - 1)) >= 0) {
+            while (i < size && letterCode(bytes.get(i)) >= 0) {
+                i++;
+            }
+        }
+        while (i < to) {
+            int code = letterCode(bytes.get(i));
+            if (code < 0) {
+                i++;
+                continue;
+            }
+            int length = 0;
+            while (code >= 0) {
+                if (length < codes.length) {
+                    codes[length] = code;
+                }
+                length++;
+                i++;
+                code = (i < size) ? letterCode(bytes.get(i)) : -1;
+            }
+            stats.addWord(codes, length);
+        }
+        return stats;
+    }
 
-        ref = new LetterDistributionFinder("Word Lists/Fours.txt");
-        int[] fours = ref.findDistribution();
-        System.out.println("Number of Fours: "+ref.words.size());
+    // 0-25 for a letter of either case, -1 for anything else
+    private static int letterCode(byte b) {
+        int c = b | 0x20; // Fold to lower case
+        return (c >= 'a' && c <= 'z') ? c - 'a' : -1;
+    }
+
+    /*
+        Tile counts in Game.TILE_DISTRIBUTION order (blanks, then A-Z) that
+        add up to tiles. Letters are apportioned by weight with at least one
+        of each, rounding by largest remainder.
+    */
+    public static int[] candidateDistribution(Stats stats, int minLength, int maxLength, int tiles, int blanks) {
+        double[] weights = new double[NUM_LETTERS];
+        double totalWeight = 0;
+        int lengthSum = 0;
+        for (int length = minLength; length <= maxLength; length++) {
+            if (stats.words[length] > 0) {
+                lengthSum += length;
+            }
+        }
+        for (int letter = 0; letter < NUM_LETTERS; letter++) {
+            double sum = 0;
+            for (int length = minLength; length <= maxLength; length++) {
+                if (stats.words[length] > 0) {
+                    sum += (double) stats.letters[length][letter] / stats.words[length];
+                }
+            }
+            weights[letter] = (lengthSum == 0) ? 0 : sum / lengthSum;
+            totalWeight += weights[letter];
+        }
+
+        int letterTiles = tiles - blanks;
+        double[] exact = new double[NUM_LETTERS];
+        int[] counts = new int[NUM_LETTERS];
+        int assigned = 0;
+        for (int letter = 0; letter < NUM_LETTERS; letter++) {
+            exact[letter] = (totalWeight == 0) ? 0 : weights[letter] / totalWeight * letterTiles;
+            counts[letter] = Math.max(1, (int) exact[letter]);
+            assigned += counts[letter];
+        }
+        // Hand out what is left to the largest remainders, or take back from the smallest
+        while (assigned != letterTiles) {
+            int pick = -1;
+            for (int letter = 0; letter < NUM_LETTERS; letter++) {
+                double remainder = exact[letter] - counts[letter];
+                if (assigned < letterTiles) {
+                    if (pick < 0 || remainder > exact[pick] - counts[pick]) {
+                        pick = letter;
+                    }
+                }
+                else if (counts[letter] > 1 && (pick < 0 || remainder < exact[pick] - counts[pick])) {
+                    pick = letter;
+                }
+            }
+            if (pick < 0) {
+                break; // Fewer tiles than letters; every letter already has its one
+            }
+            counts[pick] += (assigned < letterTiles) ? 1 : -1;
+            assigned += (assigned < letterTiles) ? 1 : -1;
+        }
+
+        int[] distribution = new int[NUM_LETTERS + 1];
+        distribution[0] = blanks;
+        System.arraycopy(counts, 0, distribution, 1, NUM_LETTERS);
+        return distribution;
+    }
+
+    // The distribution as it is written in Game
+    public static String formatDistribution(int[] distribution) {
+        StringBuilder values = new StringBuilder("{ ");
+        StringBuilder labels = new StringBuilder("//");
+        for (int i = 0; i < distribution.length; i++) {
+            String value = Integer.toString(distribution[i]);
+            String label = (i == 0) ? "?" : Character.toString((char)('A' + i - 1));
+            values.append(value);
+            labels.append(label);
+            // Keep each label under its value
+            for (int pad = label.length(); pad < value.length(); pad++) {
+                labels.append(' ');
+            }
+            for (int pad = value.length(); pad < label.length(); pad++) {
+                values.append(' ');
+            }
+            if (i < distribution.length - 1) {
+                values.append(',');
+                labels.append(',');
+            }
+        }
+        values.append(" };");
+        return "    private static final int[] TILE_DISTRIBUTION =\n        " + values + "\n        " + labels + "\n";
+    }
 
-        ref = new LetterDistributionFinder("Word Lists/Fives.txt");
-        int[] fives = ref.findDistribution();
-        System.out.println("Number of Fives: "+ref.words.size());
+    public static void main(String[] args) {
+        int minLength = 4;
+        int maxLength = 8;
+        int tiles = 75;
+        int blanks = 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> filenames = new ArrayList<String>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-lengths":
+                        String[] range = args[++i].split("-");
+                        minLength = Integer.parseInt(range[0]);
+                        maxLength = Integer.parseInt(range[range.length - 1]);
+                        break;
+                    case "-tiles":
+                        tiles = Integer.parseInt(args[++i]);
+                        break;
+                    case "-blanks":
+                        blanks = Integer.parseInt(args[++i]);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        filenames.add(args[i]);
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            filenames.clear();
+        }
+        if (filenames.isEmpty() || minLength < 1 || maxLength > MAX_LENGTH || minLength > maxLength) {
+            System.out.println("Usage: java LetterDistributionFinder [-lengths 4-8] [-tiles 75] [-blanks 2] [-threads n] <word list>...");
+            return;
+        }
 
-        ref = new LetterDistributionFinder("Word Lists/Sixes.txt");
-        int[] sixes = ref.findDistribution();
-        System.out.println("Number of Sixes: "+ref.words.size());
+        long start = System.nanoTime();
+        Stats stats;
+        try {
+            stats = analyse(filenames, threads);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: "+e.getMessage());
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
 
-        ref = new LetterDistributionFinder("Word Lists/Sevens.txt");
-        int[] sevens = ref.findDistribution();
-        System.out.println("Number of Sevens: "+ref.words.size());
+        System.out.println("Read "+stats.getTotalWords()+" words from "+filenames.size()+" list(s) in "
+                +(elapsed/1000000)+" ms ("+stats.getSkipped()+" too long for the board)");
+        for (int length = 1; length <= MAX_LENGTH; length++) {
+            if (stats.getWords(length) > 0) {
+                System.out.println("  length "+length+": "+stats.getWords(length)+" words");
+            }
+        }
 
-        ref = new LetterDistributionFinder("Word Lists/Eights.txt");
-        int[] eights = ref.findDistribution();
-        System.out.println("Number of Eights: "+ref.words.size());
+        System.out.println("Letter frequencies for lengths "+minLength+"-"+maxLength+":");
+        for (int letter = 0; letter < NUM_LETTERS; letter++) {
+            System.out.println(String.format("  %c: %6.3f%%", (char)('A' + letter),
+                    100 * stats.getLetterFrequency(minLength, maxLength, letter)));
+        }
 
-        for (int i = 0; i < 26; i++) {
-            double sum = fours[i]/4125.0 + fives[i]/9426.0 + sixes[i]/16612.0 + sevens[i]/25318.0 + eights[i]/31557.0;
-            double average = sum/30.0;
-            char letter = (char)('A' + i);
-            int tiles = 75;
-            System.out.println(letter+": "+average+" x "+tiles+" = "+(average*tiles));
+        System.out.println("Most common bigrams for lengths "+minLength+"-"+maxLength+":");
+        long[] bigrams = new long[NUM_LETTERS * NUM_LETTERS];
+        for (int length = minLength; length <= maxLength; length++) {
+            for (int b = 0; b < bigrams.length; b++) {
+                bigrams[b] += stats.bigrams[length][b];
+            }
+        }
+        for (int rank = 0; rank < 10; rank++) {
+            int top = 0;
+            for (int b = 1; b < bigrams.length; b++) {
+                if (bigrams[b] > bigrams[top]) {
+                    top = b;
+                }
+            }
+            if (bigrams[top] == 0) break;
+            System.out.println("  "+(char)('A' + top / NUM_LETTERS)+(char)('A' + top % NUM_LETTERS)+": "+bigrams[top]);
+            bigrams[top] = 0;
         }
+
+        int[] distribution = candidateDistribution(stats, minLength, maxLength, tiles, blanks);
+        System.out.println("Candidate tile distribution ("+tiles+" tiles, "+blanks+" blanks):");
+        System.out.print(formatDistribution(distribution));
     }
 }
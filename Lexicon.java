@@ -0,0 +1,559 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Scanner;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+    Word list compiled into two minimized automata that share one edge array:
+    a DAWG for membership and prefix queries, and a GADDAG for hook queries
+    and move generation. Every query walks at most one edge list per letter,
+    so lookups are O(word length) and allocate nothing.
+
+    Edge encoding (one int per edge):
+        bits 0-4   letter code (0-25 for A-Z, SEPARATOR for the GADDAG marker)
+        bit 5      the path ending on this edge spells a complete word
+        bit 6      this is the last edge of its node
+        bits 7-31  index of the first edge of the target node (0 = no children)
+
+    A node is identified by the index of its first edge. Edge lists are sorted
+    by letter code, so the separator always comes last.
+
+    Compiled file format (little-endian ints, see LexiconCompiler):
+        MAGIC, FORMAT_VERSION, numWords, dawgRoot, gaddagRoot, numEdges,
+        followed by numEdges edges.
+    A compiled file is mapped read-only and its edges are copied onto the heap
+    in one bulk read: that costs a few milliseconds per megabyte, and array
+    reads in the generator's inner loop are about a third cheaper than reads
+    through the mapped buffer. A Lexicon never changes once built, so one
+    instance can serve any number of games and threads; LexiconRegistry shares
+    them by file.
+*/
+public class Lexicon {
+    public static final int NUM_LETTERS = 26;
+    public static final int SEPARATOR = 26;
+    public static final int ALL_LETTERS = (1 << NUM_LETTERS) - 1;
+
+    private static final int LETTER_MASK = 0x1F;
+    private static final int END_OF_WORD = 1 << 5;
+    private static final int LAST_EDGE = 1 << 6;
+    private static final int TARGET_SHIFT = 7;
+
+    public static final String COMPILED_EXTENSION = ".lex";
+    private static final int MAGIC = 0x584C5848; // "HXLX"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_INTS = 6;
+
+    private final int[] edges;
+    private final int dawgRoot;
+    private final int gaddagRoot;
+    private final int numWords;
+
+    private Lexicon(int[] edges, int dawgRoot, int gaddagRoot, int numWords) {
+        this.edges = edges;
+        this.dawgRoot = dawgRoot;
+        this.gaddagRoot = gaddagRoot;
+        this.numWords = numWords;
+    }
+
+    /*
+        Opens a compiled lexicon if given one, or if a compiled copy sits next
+        to the word list and is at least as new. Otherwise compiles the word
+        list in memory.
+    */
+    public static Lexicon open(String filename) throws IOException {
+        if (filename.endsWith(COMPILED_EXTENSION)) {
+            return load(filename);
+        }
+        File source = new File(filename);
+        File compiled = new File(compiledName(filename));
+        if (compiled.isFile() && compiled.lastModified() >= source.lastModified()) {
+            return load(compiled.getPath());
+        }
+        return fromWordList(filename);
+    }
+
+    public static String compiledName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        int slash = Math.max(filename.lastIndexOf('/'), filename.lastIndexOf(File.separatorChar));
+        if (dot > slash) {
+            filename = filename.substring(0, dot);
+        }
+        return filename + COMPILED_EXTENSION;
+    }
+
+    // Maps a compiled lexicon and copies its edges onto the heap in one read
+    public static Lexicon load(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+                FileChannel channel = file.getChannel()) {
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            bytes.order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer ints = bytes.asIntBuffer();
+            if (ints.limit() < HEADER_INTS || ints.get(0) != MAGIC) {
+                throw new IOException(filename+" is not a compiled lexicon.");
+            }
+            if (ints.get(1) != FORMAT_VERSION) {
+                throw new IOException(filename+" has unsupported format version "+ints.get(1)+".");
+            }
+            int numWords = ints.get(2);
+            int dawgRoot = ints.get(3);
+            int gaddagRoot = ints.get(4);
+            int numEdges = ints.get(5);
+            if (ints.limit() < HEADER_INTS + numEdges) {
+                throw new IOException(filename+" is truncated.");
+            }
+            int[] edges = new int[numEdges];
+            ints.get(HEADER_INTS, edges);
+            return new Lexicon(edges, dawgRoot, gaddagRoot, numWords);
+        }
+    }
+
+    public void writeTo(String filename) throws IOException {
+        int numEdges = edges.length;
+        ByteBuffer bytes = ByteBuffer.allocate(4 * (HEADER_INTS + numEdges));
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putInt(MAGIC);
+        bytes.putInt(FORMAT_VERSION);
+        bytes.putInt(numWords);
+        bytes.putInt(dawgRoot);
+        bytes.putInt(gaddagRoot);
+        bytes.putInt(numEdges);
+        bytes.asIntBuffer().put(edges);
+        bytes.position(bytes.position() + 4 * numEdges);
+        bytes.flip();
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw");
+                FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    public static Lexicon fromWordList(String filename) throws FileNotFoundException {
+        Scanner sc = new Scanner(new File(filename));
+        ArrayList<String> words = new ArrayList<String>();
+        while (sc.hasNext()) {
+            words.add(sc.next());
+        }
+        sc.close();
+        return build(words);
+    }
+
+    public static Lexicon build(Collection<String> wordList) {
+        // Normalize to upper case, drop anything that is not purely A-Z
+        ArrayList<String> words = new ArrayList<String>(wordList.size());
+        for (String word : wordList) {
+            String upper = word.toUpperCase();
+            if (isWord(upper)) {
+                words.add(upper);
+            }
+        }
+        words.sort(null);
+
+        // Every word w contributes rev(w[0..i]) ^ w[i..] for 1 <= i < n,
+        //  plus rev(w) on its own
+        ArrayList<String> paths = new ArrayList<String>();
+        char separator = (char)('A' + SEPARATOR);
+        for (String word : words) {
+            StringBuilder sb = new StringBuilder(word.length() + 1);
+            for (int i = 1; i <= word.length(); i++) {
+                sb.setLength(0);
+                for (int k = i - 1; k >= 0; k--) {
+                    sb.append(word.charAt(k));
+                }
+                if (i < word.length()) {
+                    sb.append(separator);
+                    sb.append(word, i, word.length());
+                }
+                paths.add(sb.toString());
+            }
+        }
+        paths.sort(null);
+
+        Builder builder = new Builder();
+        Builder.State dawg = builder.minimize(words);
+        Builder.State gaddag = builder.minimize(paths);
+        return builder.flatten(dawg, gaddag, dedupeCount(words));
+    }
+
+    private static boolean isWord(String word) {
+        if (word.isEmpty()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'A' || c > 'Z') return false;
+        }
+        return true;
+    }
+
+    private static int dedupeCount(List<String> sorted) {
+        int count = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i == 0 || !sorted.get(i).equals(sorted.get(i - 1))) count++;
+        }
+        return count;
+    }
+
+    /*
+        Maps 'A'-'Z' and 'a'-'z' to 0-25 and anything else to -1, so queries
+        never need an upper-cased copy of their input.
+    */
+    public static int letterCode(char c) {
+        if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
+            return (c & LETTER_MASK) - 1;
+        }
+        return -1;
+    }
+
+    public int getNumWords() {
+        return numWords;
+    }
+
+    public int getNumEdges() {
+        return edges.length;
+    }
+
+    public int getDawgRoot() {
+        return dawgRoot;
+    }
+
+    public int getGaddagRoot() {
+        return gaddagRoot;
+    }
+
+    /*
+        Low-level traversal. Nodes and edges are plain ints so generators can
+        walk either automaton without creating objects.
+    */
+    public int findEdge(int node, int code) {
+        if (node == 0) return -1;
+        int e = node;
+        while (true) {
+            int edge = edges[e];
+            int letter = edge & LETTER_MASK;
+            if (letter == code) return e;
+            if (letter > code || (edge & LAST_EDGE) != 0) return -1;
+            e++;
+        }
+    }
+
+    public int edgeTarget(int edgeIndex) {
+        return edges[edgeIndex] >>> TARGET_SHIFT;
+    }
+
+    public int edgeLetter(int edgeIndex) {
+        return edges[edgeIndex] & LETTER_MASK;
+    }
+
+    public boolean edgeEndsWord(int edgeIndex) {
+        return (edges[edgeIndex] & END_OF_WORD) != 0;
+    }
+
+    public boolean isLastEdge(int edgeIndex) {
+        return (edges[edgeIndex] & LAST_EDGE) != 0;
+    }
+
+    // Bitmask of letters (not the separator) leaving the node
+    public int letterMask(int node) {
+        if (node == 0) return 0;
+        int mask = 0;
+        for (int e = node; ; e++) {
+            int edge = edges[e];
+            int letter = edge & LETTER_MASK;
+            if (letter < NUM_LETTERS) mask |= 1 << letter;
+            if ((edge & LAST_EDGE) != 0) return mask;
+        }
+    }
+
+    // Bitmask of letters leaving the node whose edge completes a word
+    public int endMask(int node) {
+        if (node == 0) return 0;
+        int mask = 0;
+        for (int e = node; ; e++) {
+            int edge = edges[e];
+            int letter = edge & LETTER_MASK;
+            if (letter < NUM_LETTERS && (edge & END_OF_WORD) != 0) mask |= 1 << letter;
+            if ((edge & LAST_EDGE) != 0) return mask;
+        }
+    }
+
+    public boolean contains(CharSequence word) {
+        int length = word.length();
+        if (length == 0) return false;
+        int node = dawgRoot;
+        int e = -1;
+        for (int i = 0; i < length; i++) {
+            int code = letterCode(word.charAt(i));
+            if (code < 0) return false;
+            e = findEdge(node, code);
+            if (e < 0) return false;
+            node = edgeTarget(e);
+        }
+        return edgeEndsWord(e);
+    }
+
+    public boolean contains(char[] word, int offset, int length) {
+        if (length == 0) return false;
+        int node = dawgRoot;
+        int e = -1;
+        for (int i = offset; i < offset + length; i++) {
+            int code = letterCode(word[i]);
+            if (code < 0) return false;
+            e = findEdge(node, code);
+            if (e < 0) return false;
+            node = edgeTarget(e);
+        }
+        return edgeEndsWord(e);
+    }
+
+    // True if some word starts with (or is) the given prefix
+    public boolean hasPrefix(CharSequence prefix) {
+        int node = dawgRoot;
+        for (int i = 0; i < prefix.length(); i++) {
+            int code = letterCode(prefix.charAt(i));
+            if (code < 0) return false;
+            int e = findEdge(node, code);
+            if (e < 0) return false;
+            if (i == prefix.length() - 1) return true;
+            node = edgeTarget(e);
+        }
+        return true;
+    }
+
+    // Letters L such that L + word is a word
+    public int frontHooks(CharSequence word) {
+        int node = gaddagRoot;
+        for (int i = word.length() - 1; i >= 0; i--) {
+            int code = letterCode(word.charAt(i));
+            if (code < 0) return 0;
+            int e = findEdge(node, code);
+            if (e < 0) return 0;
+            node = edgeTarget(e);
+        }
+        return endMask(node);
+    }
+
+    // Letters L such that word + L is a word
+    public int backHooks(CharSequence word) {
+        int node = dawgRoot;
+        for (int i = 0; i < word.length(); i++) {
+            int code = letterCode(word.charAt(i));
+            if (code < 0) return 0;
+            int e = findEdge(node, code);
+            if (e < 0) return 0;
+            node = edgeTarget(e);
+        }
+        return endMask(node);
+    }
+
+    /*
+        Letters L such that prefix + L + suffix is a word. This is the cross
+        check for an empty square with tiles on either side of it. The prefix
+        is walked backwards through the GADDAG so only the suffix has to be
+        tried once per candidate letter.
+    */
+    public int hookMask(char[] prefix, int prefixLength, char[] suffix, int suffixLength) {
+        int node = gaddagRoot;
+        if (prefixLength == 0) {
+            // Path is L ^ suffix, or just L when there is no suffix
+            if (suffixLength == 0) return endMask(node);
+            int mask = 0;
+            for (int e = node; node != 0; e++) {
+                int letter = edgeLetter(e);
+                if (letter < NUM_LETTERS) {
+                    int sep = findEdge(edgeTarget(e), SEPARATOR);
+                    if (sep >= 0 && followEndsWord(edgeTarget(sep), suffix, suffixLength)) {
+                        mask |= 1 << letter;
+                    }
+                }
+                if (isLastEdge(e)) break;
+            }
+            return mask;
+        }
+
+        // Path is rev(prefix) ^ L suffix
+        for (int i = prefixLength - 1; i >= 0; i--) {
+            int code = letterCode(prefix[i]);
+            if (code < 0) return 0;
+            int e = findEdge(node, code);
+            if (e < 0) return 0;
+            node = edgeTarget(e);
+        }
+        int sep = findEdge(node, SEPARATOR);
+        if (sep < 0) return 0;
+        node = edgeTarget(sep);
+        if (suffixLength == 0) return endMask(node);
+        int mask = 0;
+        for (int e = node; node != 0; e++) {
+            int letter = edgeLetter(e);
+            if (letter < NUM_LETTERS && followEndsWord(edgeTarget(e), suffix, suffixLength)) {
+                mask |= 1 << letter;
+            }
+            if (isLastEdge(e)) break;
+        }
+        return mask;
+    }
+
+    private boolean followEndsWord(int node, char[] letters, int length) {
+        int e = -1;
+        for (int i = 0; i < length; i++) {
+            int code = letterCode(letters[i]);
+            if (code < 0) return false;
+            e = findEdge(node, code);
+            if (e < 0) return false;
+            node = edgeTarget(e);
+        }
+        return e >= 0 && edgeEndsWord(e);
+    }
+
+    /*
+        Incremental construction of a minimal automaton from sorted input
+        (Daciuk et al.). Only the current path is mutable; everything to its
+        left has already been merged into the register.
+    */
+    private static class Builder {
+        private static class State {
+            private int[] letters = new int[4];
+            private State[] next = new State[4];
+            private int size;
+            private boolean terminal;
+            private int offset = -1;
+            private boolean written;
+
+            private State lastChild() {
+                return size == 0 ? null : next[size - 1];
+            }
+
+            private void addChild(int letter, State child) {
+                if (size == letters.length) {
+                    letters = Arrays.copyOf(letters, size * 2);
+                    next = Arrays.copyOf(next, size * 2);
+                }
+                letters[size] = letter;
+                next[size] = child;
+                size++;
+            }
+
+            @Override
+            public int hashCode() {
+                int h = terminal ? 1 : 0;
+                for (int i = 0; i < size; i++) {
+                    h = 31 * h + letters[i];
+                    h = 31 * h + System.identityHashCode(next[i]);
+                }
+                return h;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof State)) return false;
+                State other = (State) o;
+                if (terminal != other.terminal || size != other.size) return false;
+                for (int i = 0; i < size; i++) {
+                    if (letters[i] != other.letters[i] || next[i] != other.next[i]) return false;
+                }
+                return true;
+            }
+        }
+
+        private HashMap<State, State> register = new HashMap<State, State>();
+        private int numEdges = 0;
+
+        private State minimize(List<String> sorted) {
+            State root = new State();
+            String previous = "";
+            for (String word : sorted) {
+                if (word.equals(previous)) continue;
+                // Length of common prefix with the previous word
+                int common = 0;
+                State state = root;
+                while (common < word.length() && common < previous.length()
+                        && word.charAt(common) == previous.charAt(common)) {
+                    state = state.lastChild();
+                    common++;
+                }
+                if (state.size > 0) {
+                    replaceOrRegister(state);
+                }
+                for (int i = common; i < word.length(); i++) {
+                    State child = new State();
+                    state.addChild(word.charAt(i) - 'A', child);
+                    state = child;
+                }
+                state.terminal = true;
+                previous = word;
+            }
+            if (root.size > 0) {
+                replaceOrRegister(root);
+            }
+            return root;
+        }
+
+        private void replaceOrRegister(State state) {
+            State child = state.lastChild();
+            if (child.size > 0) {
+                replaceOrRegister(child);
+            }
+            State existing = register.get(child);
+            if (existing != null) {
+                state.next[state.size - 1] = existing;
+            }
+            else {
+                register.put(child, child);
+            }
+        }
+
+        private Lexicon flatten(State dawg, State gaddag, int numWords) {
+            // Index 0 is reserved so that a target of 0 can mean "no children"
+            numEdges = 1;
+            assignOffsets(dawg);
+            assignOffsets(gaddag);
+            int[] edges = new int[numEdges];
+            writeEdges(dawg, edges);
+            writeEdges(gaddag, edges);
+            return new Lexicon(edges, Math.max(dawg.offset, 0), Math.max(gaddag.offset, 0), numWords);
+        }
+
+        private void assignOffsets(State root) {
+            ArrayList<State> stack = new ArrayList<State>();
+            stack.add(root);
+            while (!stack.isEmpty()) {
+                State state = stack.remove(stack.size() - 1);
+                if (state.offset != -1 || state.size == 0) continue;
+                state.offset = numEdges;
+                numEdges += state.size;
+                for (int i = 0; i < state.size; i++) {
+                    stack.add(state.next[i]);
+                }
+            }
+        }
+
+        private void writeEdges(State root, int[] edges) {
+            ArrayList<State> stack = new ArrayList<State>();
+            stack.add(root);
+            while (!stack.isEmpty()) {
+                State state = stack.remove(stack.size() - 1);
+                if (state.size == 0 || state.written) continue;
+                state.written = true;
+                for (int i = 0; i < state.size; i++) {
+                    State child = state.next[i];
+                    int edge = state.letters[i];
+                    if (child.terminal) edge |= END_OF_WORD;
+                    if (i == state.size - 1) edge |= LAST_EDGE;
+                    edge |= Math.max(child.offset, 0) << TARGET_SHIFT;
+                    edges[state.offset + i] = edge;
+                    stack.add(child);
+                }
+            }
+        }
+    }
+}
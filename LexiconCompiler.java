@@ -0,0 +1,41 @@
+import java.io.IOException;
+
+/*
+    Offline step that turns a plain word list into a compiled lexicon which
+    Lexicon.load() maps straight into memory.
+
+    Usage: java LexiconCompiler lexicons/nwl18.txt [lexicons/nwl18.lex]
+*/
+public class LexiconCompiler {
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java LexiconCompiler <word list> [output file]");
+            return;
+        }
+        String source = args[0];
+        String target = (args.length == 2) ? args[1] : Lexicon.compiledName(source);
+
+        long start = System.nanoTime();
+        Lexicon lexicon;
+        try {
+            lexicon = Lexicon.fromWordList(source);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: "+source+" doesn't exist.");
+            return;
+        }
+        long built = System.nanoTime();
+
+        try {
+            lexicon.writeTo(target);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't write "+target+": "+e.getMessage());
+            return;
+        }
+
+        System.out.println("Compiled "+lexicon.getNumWords()+" words into "+lexicon.getNumEdges()
+                +" edges ("+(4L*lexicon.getNumEdges()/1024)+" KiB) in "
+                +((built - start)/1000000)+" ms -> "+target);
+    }
+}
@@ -0,0 +1,100 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    One shared Lexicon per file for the whole process. The first request
+    for a file opens it (see Lexicon.open) and later requests, from any
+    thread, get the same instance, so a thousand games on one word list
+    hold one lexicon between them.
+
+    Files are keyed by canonical path, so different spellings of a path
+    share an entry. Each entry has its own lock, so one slow load doesn't
+    hold up requests for other files, and racing first requests load the
+    file once. The registry only keeps weak references: once no game holds
+    a lexicon it can be collected, and its mapping released, and the next
+    request opens the file again. Cleared entries are dropped as they are
+    found.
+*/
+public class LexiconRegistry {
+    private static final ConcurrentHashMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+    private static final ReferenceQueue<Lexicon> CLEARED = new ReferenceQueue<Lexicon>();
+
+    private static class Entry {
+        private String key;
+        private LexiconReference reference;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    // Remembers its entry so the entry can be dropped once the lexicon is collected
+    private static class LexiconReference extends WeakReference<Lexicon> {
+        private Entry entry;
+
+        private LexiconReference(Lexicon lexicon, Entry entry) {
+            super(lexicon, CLEARED);
+            this.entry = entry;
+        }
+    }
+
+    private LexiconRegistry() {
+    }
+
+    // The shared lexicon for a word list or compiled file, opening it if no one holds it
+    public static Lexicon get(String filename) throws IOException {
+        expungeCleared();
+        String key = new File(filename).getCanonicalPath();
+        while (true) {
+            Entry entry = ENTRIES.computeIfAbsent(key, Entry::new);
+            synchronized (entry) {
+                /*
+                    A cleanup may have dropped this entry while we waited for
+                    its lock, and another thread may already have put a fresh
+                    one in its place. Only the entry the map holds may open
+                    the file, and it can't be dropped while we hold its lock.
+                */
+                Entry current = ENTRIES.putIfAbsent(key, entry);
+                if (current != null && current != entry) {
+                    continue;
+                }
+                Lexicon lexicon = (entry.reference == null) ? null : entry.reference.get();
+                if (lexicon == null) {
+                    try {
+                        lexicon = Lexicon.open(filename);
+                    }
+                    catch (IOException e) {
+                        if (entry.reference == null) {
+                            ENTRIES.remove(key, entry);
+                        }
+                        throw e;
+                    }
+                    entry.reference = new LexiconReference(lexicon, entry);
+                }
+                return lexicon;
+            }
+        }
+    }
+
+    // Number of files with a lexicon that may still be in use
+    public static int size() {
+        expungeCleared();
+        return ENTRIES.size();
+    }
+
+    private static void expungeCleared() {
+        LexiconReference cleared;
+        while ((cleared = (LexiconReference) CLEARED.poll()) != null) {
+            Entry entry = cleared.entry;
+            synchronized (entry) {
+                // Only if the entry hasn't since been given a fresh lexicon
+                if (entry.reference == cleared) {
+                    ENTRIES.remove(entry.key, entry);
+                }
+            }
+        }
+    }
+}
@@ -1,23 +1,33 @@
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 import java.util.EmptyStackException;
 
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Group;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
 import javafx.stage.Stage;
 
 import java.lang.Math;
@@ -33,6 +43,10 @@ public class Main extends Application {
     private static final int RACK_X_OFFSET = 200;
     private static final int RACK_Y_OFFSET = 500;
 
+    private static final int HINT_X_OFFSET = 600;
+    private static final int HINT_Y_OFFSET = 130;
+    private static final int NUM_HINTS = 5;
+
     private static final int RACK_TILE_WIDTH = 50;
     private static final int RACK_TILE_GAP = 5;
 
@@ -41,7 +55,14 @@ public class Main extends Application {
 
     private static final double TILE_ASPECT_RATIO = 1.16;
     private static final double UNPLACED_TILE_SIZE = .8;
+    private static final double BLANK_OPACITY = .6; // Blanks show their letter's tile, faded
 
+    /*
+        Every image is decoded once and shared by all the views showing it:
+        one per bonus, one per letter and the cursor. Only touched on the FX
+        thread.
+    */
+    private static final Map<String, Image> IMAGES = new HashMap<String, Image>();
 
     private Pane window;
     private Group boardGroup;
@@ -54,7 +75,10 @@ public class Main extends Application {
     private Stack<RackTile> placedTiles;
     private Space[][] gameBoard;
     private BoardTile[][] boardTiles;
+    private BoardCanvas boardCanvas; // Draws the board instead of the nodes above when run with -canvas
     private Cursor cursor;
+    private HintService hintService;
+    private Text hintText;
     private int currPlayerIndex = 0;
 
     @Override
@@ -65,6 +89,7 @@ public class Main extends Application {
             cursor.deactivate();
         });
         game = new Game();
+        preloadImages();
         window = new Pane();
         rackTiles = new RackTile[Game.NUM_TILES_IN_RACK];
         placedTiles = new Stack<RackTile>();
@@ -73,44 +98,40 @@ public class Main extends Application {
         boardGroup = new Group();
         boardTileGroup = new Group();
         rackTileGroup = new Group();
-        window.getChildren().addAll(background, boardGroup, boardTileGroup, rackTileGroup, cursor);
+        hintText = new Text(HINT_X_OFFSET, HINT_Y_OFFSET, "");
+        window.getChildren().addAll(background, boardGroup, boardTileGroup, rackTileGroup, cursor, hintText);
 
         boardTiles = new BoardTile[Board.BOARD_WIDTH][Board.BOARD_WIDTH];
 
         gameBoard = new Space[Board.BOARD_WIDTH][Board.BOARD_WIDTH];
 
-        for (int row = 0; row < Board.BOARD_WIDTH; row++) {
-            for (int col = 0; col < Board.BOARD_WIDTH; col++) {
-                String bonus = "VOI";
-                switch (Board.getBonusValue(col, row)) {
-                    case Board.NBS:
-                        bonus = "NBS";
-                        break;
-                    case Board.DLS:
-                        bonus = "DLS";
-                        break;
-                    case Board.DWS:
-                        bonus = "DWS";
-                        break;
-                    case Board.TLS:
-                        bonus = "TLS";
-                        break;
-                    case Board.TWS:
-                        bonus = "TWS";
-                        break;
-                }
-
-                if (bonus.equals("VOI")) continue;
+        if (getParameters().getRaw().contains("-canvas")) {
+            boardCanvas = new BoardCanvas();
+            boardGroup.getChildren().add(boardCanvas);
+            boardCanvas.draw();
+        }
+        else {
+            for (int row = 0; row < Board.BOARD_WIDTH; row++) {
+                for (int col = 0; col < Board.BOARD_WIDTH; col++) {
+                    String bonus = getBonusName(Board.getBonusValue(col, row));
+                    if (bonus.equals("VOI")) continue;
 
-                Space space = new Space(bonus, col, row);
-                gameBoard[row][col] = space;
+                    Space space = new Space(bonus, col, row);
+                    gameBoard[row][col] = space;
 
-                boardGroup.getChildren().add(space);
+                    boardGroup.getChildren().add(space);
+                }
             }
         }
 
         updateRack(currPlayerIndex);
 
+        // Hints are worked out off the FX thread and shown as they improve
+        if (game.lexicon != null) {
+            hintService = new HintService(game.lexicon, NUM_HINTS, this::showHints, Platform::runLater);
+            hintService.update(game, currPlayerIndex);
+        }
+
         //Creating a scene object
         Scene scene = new Scene(window, WINDOW_WIDTH, WINDOW_HEIGHT);
 
@@ -144,14 +165,7 @@ public class Main extends Application {
             super();
             this.col = col;
             this.row = row;
-            Image image;
-            try {
-                image = new Image(new FileInputStream("images/"+bonus+".png"));
-            }
-            catch (FileNotFoundException e) {
-                return;
-            }
-            setImage(image);
+            setImage(loadImage(bonus));
             setX(calculateX(col, row));
             setY(calculateY(col, row));
             setPreserveRatio(true);
@@ -162,20 +176,15 @@ public class Main extends Application {
         }
     }
 
+    // Made the first time a tile lands on its cell, then kept and reused
     private class BoardTile extends ImageView {
         private Board.Tile tile;
 
         public BoardTile(char data, int col, int row) {
             super();
             tile = new Board.Tile(data, col, row);
-            Image image;
-            try {
-                image = new Image(new FileInputStream("images/woodtile"+data+".png"));
-            }
-            catch (FileNotFoundException e) {
-                return;
-            }
-            setImage(image);
+            setImage(loadImage(tileImageName(data)));
+            setOpacity(isBlank(data) ? BLANK_OPACITY : 1);
             setPreserveRatio(true);
             setX(calculateX(col, row));
             setY(calculateY(col, row));
@@ -184,6 +193,16 @@ public class Main extends Application {
                 cursor.activate(tile.getCol(), tile.getRow());
             });
         }
+
+        // Shows a different tile in the same cell
+        public void setData(char data) {
+            if (data != tile.getData()) {
+                tile = new Board.Tile(data, tile.getCol(), tile.getRow());
+                setImage(loadImage(tileImageName(data)));
+                setOpacity(isBlank(data) ? BLANK_OPACITY : 1);
+            }
+        }
+
         public int getRow() {
             return tile.getRow();
         }
@@ -209,18 +228,20 @@ public class Main extends Application {
             super();
             this.tile = new Board.Tile(letter, -1, -1);
             this.pos = pos;
-            Image image;
-            try {
-                image = new Image(new FileInputStream("images/woodtile"+letter+".png"));
-            }
-            catch (FileNotFoundException e) {
-                return;
-            }
-            setImage(image);
+            setImage(loadImage("woodtile"+letter));
             setPreserveRatio(true);
             moveToRack();
         }
 
+        // Puts a different letter in this rack slot
+        public void setLetter(char letter) {
+            if (letter != tile.getData()) {
+                tile = new Board.Tile(letter, -1, -1);
+                setImage(loadImage("woodtile"+letter));
+            }
+            moveToRack();
+        }
+
         public void moveOnBoard(int col, int row) {
             tile.setCol(col);
             tile.setRow(row);
@@ -257,6 +278,106 @@ public class Main extends Application {
         }
     }
 
+    /*
+        The whole board, spaces and tiles, drawn on one Canvas instead of a
+        node per space and per tile. The images come from a single atlas and
+        clicks are mapped back to cells with cellAt, so there is one node and
+        one mouse handler however many cells the board has. Tiles still on
+        their way to the board and the cursor stay as nodes on top.
+
+        Neighbouring images overlap, so a change redraws the whole board;
+        that is one pass of drawImage calls from the same texture.
+    */
+    private class BoardCanvas extends Canvas {
+        private Atlas atlas = new Atlas();
+
+        BoardCanvas() {
+            super(WINDOW_WIDTH, RACK_Y_OFFSET);
+            setOnMouseClicked(e -> {
+                Board.Geometry geometry = game.board.getGeometry();
+                int cell = cellAt(geometry, e.getX(), e.getY());
+                if (cell == -1) {
+                    cursor.deactivate();
+                }
+                else {
+                    cursor.activate(geometry.getCol(cell), geometry.getRow(cell));
+                }
+            });
+        }
+
+        // Cells in packed order, which is row by row as the overlaps need
+        private void draw() {
+            GraphicsContext gc = getGraphicsContext2D();
+            gc.clearRect(0, 0, getWidth(), getHeight());
+            Board board = game.board;
+            Board.Geometry geometry = board.getGeometry();
+            for (int cell = 0; cell < geometry.getNumCells(); cell++) {
+                int x = calculateX(geometry.getCol(cell), geometry.getRow(cell));
+                int y = calculateY(geometry.getCol(cell), geometry.getRow(cell));
+                atlas.draw(gc, getBonusName(board.getBonusAt(cell)), x, y, SPACE_WIDTH);
+                char tileChar = board.getCharAt(cell);
+                if (tileChar != Board.EMT) {
+                    gc.setGlobalAlpha(isBlank(tileChar) ? BLANK_OPACITY : 1);
+                    atlas.draw(gc, tileImageName(tileChar), x, y, SPACE_WIDTH - SPACE_OVERLAP/2);
+                    gc.setGlobalAlpha(1);
+                }
+            }
+        }
+    }
+
+    /*
+        Every bonus and letter image copied into one texture, in a grid of
+        equal slots sized for the largest image.
+    */
+    private static class Atlas {
+        private WritableImage image;
+        private Map<String, int[]> regions = new HashMap<String, int[]>(); // x, y, width, height
+
+        Atlas() {
+            List<String> names = new ArrayList<String>();
+            for (char bonus : new char[] { Board.NBS, Board.DLS, Board.DWS, Board.TLS, Board.TWS }) {
+                names.add(getBonusName(bonus));
+            }
+            for (char letter = 'A'; letter <= 'Z'; letter++) {
+                names.add("woodtile"+letter);
+            }
+
+            int slotWidth = 1;
+            int slotHeight = 1;
+            for (String name : names) {
+                Image source = loadImage(name);
+                if (source == null) continue;
+                slotWidth = Math.max(slotWidth, (int) source.getWidth());
+                slotHeight = Math.max(slotHeight, (int) source.getHeight());
+            }
+            int columns = (int) Math.ceil(Math.sqrt(names.size()));
+            int rows = (names.size() + columns - 1) / columns;
+            image = new WritableImage(columns * slotWidth, rows * slotHeight);
+            PixelWriter writer = image.getPixelWriter();
+            for (int i = 0; i < names.size(); i++) {
+                Image source = loadImage(names.get(i));
+                if (source == null) continue;
+                int x = (i % columns) * slotWidth;
+                int y = (i / columns) * slotHeight;
+                int width = (int) source.getWidth();
+                int height = (int) source.getHeight();
+                PixelReader reader = source.getPixelReader();
+                writer.setPixels(x, y, width, height, reader, 0, 0);
+                regions.put(names.get(i), new int[] { x, y, width, height });
+            }
+        }
+
+        // Draws an image at the given height, keeping its aspect ratio; nothing if there is no such image
+        private void draw(GraphicsContext gc, String name, double x, double y, double height) {
+            int[] region = regions.get(name);
+            if (region == null) {
+                return;
+            }
+            double width = height * region[2] / region[3];
+            gc.drawImage(image, region[0], region[1], region[2], region[3], x, y, width, height);
+        }
+    }
+
     private class Cursor extends ImageView {
         int col;
         int row;
@@ -268,15 +389,7 @@ public class Main extends Application {
             direction = Board.Direction.DOWN;
             setVisible(false);
 
-            Image image;
-            try {
-                image = new Image(new FileInputStream("images/cursor.png"));
-            }
-            catch (FileNotFoundException e) {
-                return;
-            }
-
-            setImage(image);
+            setImage(loadImage("cursor"));
             setPreserveRatio(true);
             setFitHeight(SPACE_WIDTH);
             setOnMouseClicked(e -> {
@@ -432,52 +545,182 @@ public class Main extends Application {
         }
     }
 
-    private void clearRackTiles() {
-        for (int i = 0; i < rackTiles.length; i++) {
-            RackTile rackTile = rackTiles[i];
-            rackTiles[i] = null;
-            rackTileGroup.getChildren().remove(rackTile);
-        }
-    }
-
+    // Shows the player's rack, reusing the slots' views and images
     private void updateRack(int playerIndex) {
-        clearRackTiles();
         char[] rack = game.getPlayerRack(playerIndex);
         for (int pos = 0; pos < Game.NUM_TILES_IN_RACK; pos++) {
-            RackTile rackTile = new RackTile(rack[pos], pos);
-            rackTiles[pos] = rackTile;
-            rackTileGroup.getChildren().add(rackTile);
+            if (rackTiles[pos] == null) {
+                rackTiles[pos] = new RackTile(rack[pos], pos);
+                rackTileGroup.getChildren().add(rackTiles[pos]);
+            }
+            else {
+                rackTiles[pos].setLetter(rack[pos]);
+            }
         }
     }
 
     private void placeTiles() {
-        while (!placedTiles.isEmpty()) {
-            RackTile rackTile = placedTiles.pop();
-            game.placeTile(rackTile.getTile(), currPlayerIndex);
+        if (placedTiles.isEmpty()) {
+            return;
+        }
+        List<Board.Tile> tiles = new ArrayList<Board.Tile>();
+        // Copies, since the history keeps these and the rack tiles get reused
+        for (RackTile rackTile : placedTiles) {
+            tiles.add(new Board.Tile((char) rackTile.getData(), rackTile.getCol(), rackTile.getRow()));
+        }
+        int score = game.makeMove(tiles, currPlayerIndex);
+        if (score < 0) {
+            System.out.println("Invalid play.");
+            placeTilesOnRack();
+            return;
         }
-        game.restockRack(currPlayerIndex);
+        placedTiles.clear();
+        System.out.println("Scored "+score+" (total "+game.playerScores[currPlayerIndex]+")");
         game.printRack(currPlayerIndex);
         updateRack(currPlayerIndex);
-        renderBoard();
+        renderCells(tiles);
+        if (hintService != null) {
+            hintText.setText("");
+            hintService.update(game, currPlayerIndex);
+        }
     }
 
-    private void renderBoard() {
-        for (int row = 0; row < Board.BOARD_WIDTH; row++) {
-            for (int col = 0; col < Board.BOARD_WIDTH; col++) {
-                BoardTile prevTile = boardTiles[row][col];
-                if (prevTile != null) {
-                    boardTileGroup.getChildren().remove(prevTile);
-                }
+    // Called on the FX thread with the latest hints for the current position
+    private void showHints(HintService.Hints hints) {
+        // An endgame stage that ran out of time is a depth-limited estimate, not a solution
+        String stage = hints.getStage().toString().toLowerCase();
+        if (hints.getStage() == HintService.Stage.ENDGAME) {
+            stage += hints.isExact() ? ", exact" : ", estimate";
+        }
+        StringBuilder sb = new StringBuilder("Hints ("+stage+(hints.isLast() ? "" : "...")+")\n");
+        for (HintService.Hint hint : hints.getHints()) {
+            sb.append(hint).append('\n');
+        }
+        hintText.setText(sb.toString());
+    }
 
-                char tileChar = game.board.getCharAt(col, row);
-                if (tileChar == Board.EMT || tileChar == Board.VOI) {
-                    continue;
-                }
-                BoardTile newTile = new BoardTile(tileChar, col, row);
-                boardTiles[row][col] = newTile;
-                boardTileGroup.getChildren().add(newTile);
+    @Override
+    public void stop() {
+        if (hintService != null) {
+            hintService.shutdown();
+        }
+    }
+
+    // Redraws just the cells a play touched, so the cost doesn't grow as the board fills
+    private void renderCells(List<Board.Tile> tiles) {
+        if (boardCanvas != null) {
+            boardCanvas.draw();
+            return;
+        }
+        for (Board.Tile tile : tiles) {
+            renderCell(tile.getCol(), tile.getRow());
+        }
+    }
+
+    private void renderCell(int col, int row) {
+        BoardTile boardTile = boardTiles[row][col];
+        char tileChar = game.board.getCharAt(col, row);
+        if (tileChar == Board.EMT || tileChar == Board.VOI) {
+            if (boardTile != null) {
+                boardTile.setVisible(false);
             }
+            return;
+        }
+        if (boardTile == null) {
+            boardTile = new BoardTile(tileChar, col, row);
+            boardTiles[row][col] = boardTile;
+            boardTileGroup.getChildren().add(boardTile);
+        }
+        else {
+            boardTile.setData(tileChar);
+        }
+        boardTile.setVisible(true);
+    }
+
+    // Decodes every image the board, racks and cursor use, up front
+    private static void preloadImages() {
+        for (char bonus : new char[] { Board.NBS, Board.DLS, Board.DWS, Board.TLS, Board.TWS }) {
+            loadImage(getBonusName(bonus));
+        }
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            loadImage("woodtile"+letter);
+        }
+        loadImage("cursor");
+    }
+
+    // The image in images/<name>.png, decoded on first use; null if there is no such file
+    private static Image loadImage(String name) {
+        if (!IMAGES.containsKey(name)) {
+            Image image = null;
+            try (FileInputStream in = new FileInputStream("images/"+name+".png")) {
+                image = new Image(in);
+            }
+            catch (IOException e) {
+                // A missing image leaves the view blank
+            }
+            IMAGES.put(name, image);
+        }
+        return IMAGES.get(name);
+    }
+
+    // A blank on the board is its letter in lower case, drawn with that letter's tile
+    private static String tileImageName(char data) {
+        return "woodtile"+(isBlank(data) ? Character.toUpperCase(data) : data);
+    }
+
+    private static boolean isBlank(char data) {
+        return data >= 'a' && data <= 'z';
+    }
+
+    private static String getBonusName(char bonus) {
+        switch (bonus) {
+            case Board.NBS:
+                return "NBS";
+            case Board.DLS:
+                return "DLS";
+            case Board.DWS:
+                return "DWS";
+            case Board.TLS:
+                return "TLS";
+            case Board.TWS:
+                return "TWS";
+            default:
+                return "VOI";
+        }
+    }
+
+    /*
+        The cell of the given geometry drawn under a point, as a packed
+        index, or -1 if there is none: the inverse of calculateX and
+        calculateY. Measured from
+        the centre of the first space, a cell's centre sits at
+        (step * col * sqrt(3)/2, step * (row - col/2)), a regular hexagonal
+        lattice, so the cell is the nearest lattice point, found by rounding
+        the fractional col and row as cube coordinates (col, row - col, -row).
+    */
+    static int cellAt(Board.Geometry geometry, double x, double y) {
+        double step = SPACE_WIDTH - SPACE_OVERLAP;
+        double fracCol = (x - BOARD_X_OFFSET - SPACE_WIDTH*TILE_ASPECT_RATIO/2.0) / (step*Math.sqrt(3)/2.0);
+        double fracRow = (y - BOARD_Y_OFFSET - SPACE_WIDTH/2.0) / step + fracCol/2.0;
+        double cubeX = fracCol;
+        double cubeY = fracRow - fracCol;
+        double cubeZ = -fracRow;
+        long roundX = Math.round(cubeX);
+        long roundY = Math.round(cubeY);
+        long roundZ = Math.round(cubeZ);
+        double diffX = Math.abs(roundX - cubeX);
+        double diffY = Math.abs(roundY - cubeY);
+        double diffZ = Math.abs(roundZ - cubeZ);
+        // The coordinates must sum to zero, so the one rounded furthest is recomputed from the others
+        if (diffX > diffY && diffX > diffZ) {
+            roundX = -roundY - roundZ;
+        }
+        else if (diffZ > diffY) {
+            roundZ = -roundX - roundY;
         }
+        int col = (int) roundX;
+        int row = (int) -roundZ;
+        return geometry.getIndex(col, row);
     }
 
     private static int calculateX(int col, int row) {
@@ -0,0 +1,94 @@
+import java.util.List;
+import java.util.ArrayList;
+
+/*
+    A play along one of the three board directions. The word holds every
+    letter of the main strand, including tiles already on the board; bit i of
+    placed is set when word[i] comes from the rack. Lower-case letters are
+    blanks standing in for that letter.
+*/
+public class Move {
+    private Board.Direction direction;
+    private int startCol;
+    private int startRow;
+    private char[] word;
+    private long placed;
+    private int score;
+
+    public Move(Board.Direction direction, int startCol, int startRow, char[] word, long placed) {
+        this.direction = direction;
+        this.startCol = startCol;
+        this.startRow = startRow;
+        this.word = word;
+        this.placed = placed;
+        this.score = 0;
+    }
+
+    public Board.Direction getDirection() {
+        return this.direction;
+    }
+
+    public int getStartCol() {
+        return this.startCol;
+    }
+
+    public int getStartRow() {
+        return this.startRow;
+    }
+
+    public char[] getWord() {
+        return this.word;
+    }
+
+    public int getLength() {
+        return this.word.length;
+    }
+
+    public long getPlaced() {
+        return this.placed;
+    }
+
+    public boolean isPlaced(int index) {
+        return (placed & (1L << index)) != 0;
+    }
+
+    public int getNumTilesPlaced() {
+        return Long.bitCount(placed);
+    }
+
+    public int getScore() {
+        return this.score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+
+    public int getCol(int index) {
+        return startCol + index * Board.colStep(direction);
+    }
+
+    public int getRow(int index) {
+        return startRow + index * Board.rowStep(direction);
+    }
+
+    // The tiles this move takes from the rack, ready for Board.placeTile
+    public List<Board.Tile> getTiles() {
+        List<Board.Tile> tiles = new ArrayList<Board.Tile>(getNumTilesPlaced());
+        for (int i = 0; i < word.length; i++) {
+            if (isPlaced(i)) {
+                tiles.add(new Board.Tile(word[i], getCol(i), getRow(i)));
+            }
+        }
+        return tiles;
+    }
+
+    public String getWordString() {
+        return new String(word);
+    }
+
+    @Override
+    public String toString() {
+        return direction+" "+startCol+","+startRow+" "+getWordString()+" ("+score+")";
+    }
+}
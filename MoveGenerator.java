@@ -0,0 +1,313 @@
+import java.util.List;
+import java.util.ArrayList;
+
+/*
+    Lists every legal play for a rack using the GADDAG in a Lexicon
+    (Gordon's algorithm, adapted to the three hex directions).
+
+    For each direction the board is cut into lines (files). Every empty cell
+    next to a tile is an anchor, and each play is generated once, from the
+    leftmost anchor it covers: the GADDAG walks left from the anchor, then
+    crosses the separator and walks right. A tile placed in one direction
+    forms cross words along the other two, so the letters allowed on a cell
+    are the intersection of the hook sets of both cross directions. Board
+    keeps those cross-checks current as tiles are placed.
+
+    Works on boards of any radius, reading each line straight from the
+    board's packed cells through its Geometry's line tables. The anchors of
+    a line come from the board's BitBoard, so lines without one are skipped
+    before any cell is read. Not thread safe; keep one generator per thread.
+*/
+public class MoveGenerator {
+    private static final Board.Direction[] DIRECTIONS = Board.Direction.values();
+
+    private Lexicon lexicon;
+    private Board board;
+    private List<Move> moves;
+
+    private int[] rackCounts = new int[27];
+    // Letters (not blanks) still on the rack, kept in step with rackCounts
+    private int rackLetters;
+
+    // The line currently being searched, sized for the widest board seen
+    private Board.Geometry geometry;
+    private Board.Direction direction;
+    private int[] lineCells;
+    private int lineLength;
+    private char[] lineLetters = new char[Board.BOARD_WIDTH];
+    private int[] lineCross = new int[Board.BOARD_WIDTH];
+    private boolean[] lineAnchor = new boolean[Board.BOARD_WIDTH];
+    private char[] tiles = new char[Board.BOARD_WIDTH];
+    private long placedMask;
+    private int anchor;
+
+    public MoveGenerator(Lexicon lexicon) {
+        this.lexicon = lexicon;
+    }
+
+    public List<Move> generate(Board board, char[] rack) {
+        List<Move> moves = new ArrayList<Move>();
+        generate(board, rack, moves);
+        return moves;
+    }
+
+    /*
+        Adds the plays to the list. The board's cross-checks have to come
+        from the same lexicon, so a board on any other is refused rather
+        than rebuilt.
+    */
+    public void generate(Board board, char[] rack, List<Move> moves) {
+        begin(board, rack, moves);
+        int width = geometry.getWidth();
+        for (Board.Direction dir : DIRECTIONS) {
+            direction = dir;
+            for (int file = 0; file < width; file++) {
+                if (loadLine(dir, file)) {
+                    searchLine();
+                }
+            }
+        }
+        end();
+    }
+
+    // Adds just the plays along one line
+    public void generateLine(Board board, char[] rack, Board.Direction dir, int file, List<Move> moves) {
+        begin(board, rack, moves);
+        direction = dir;
+        if (loadLine(dir, file)) {
+            searchLine();
+        }
+        end();
+    }
+
+    /*
+        Writes what the plays along one line depend on into state, one entry
+        per cell: the tile, or for an empty cell its cross-check, whether it
+        is an anchor, which earlier directions already touch it and the tile
+        values of the cross words it would join. Boards that agree on a
+        line's state have the same plays along it, scoring the same, so a
+        caller searching many nearby positions can keep plays per line.
+        Returns the line's length, or 0 if it has no anchor and so no plays.
+    */
+    public int getLineState(Board board, Board.Direction dir, int file, long[] state) {
+        Board.Geometry geometry = board.getGeometry();
+        int[] cells = geometry.getLine(dir, file);
+        long anchors = getAnchors(board, dir, file);
+        if (anchors == 0) {
+            return 0;
+        }
+        int start = geometry.getLineStart(dir, file);
+        for (int i = 0; i < cells.length; i++) {
+            int cell = cells[i];
+            char data = board.getCharAt(cell);
+            if (Board.isLetter(data)) {
+                state[i] = data;
+                continue;
+            }
+            int cross = board.getCrossCheck(dir, cell);
+            long entry = (1L << 62) | cross;
+            if ((anchors & (1L << (start + i))) != 0) {
+                entry |= 1L << 27;
+            }
+            if ((cross & Board.TOUCHED) != 0) {
+                int shift = 32;
+                for (Board.Direction other : DIRECTIONS) {
+                    if (other == dir) continue;
+                    // Untouched directions have no cross word: their sum field stays 0
+                    if ((board.getHooks(other, cell) & Board.TOUCHED) != 0) {
+                        if (other.ordinal() < dir.ordinal()) {
+                            entry |= 1L << (28 + other.ordinal());
+                        }
+                        entry |= (long) (board.getCrossSum(other, cell) + 1) << shift;
+                    }
+                    shift += 12;
+                }
+            }
+            state[i] = entry;
+        }
+        return cells.length;
+    }
+
+    // Anchors of one file, bit pos set for each; the centre alone on an empty board
+    private static long getAnchors(Board board, Board.Direction dir, int file) {
+        if (board.getTileCount() == 0) {
+            int radius = board.getGeometry().getRadius();
+            return (file == radius) ? 1L << radius : 0L;
+        }
+        return board.getBitBoard().getAnchors(dir, file);
+    }
+
+    private void begin(Board board, char[] rack, List<Move> moves) {
+        if (board.getLexicon() != lexicon) {
+            throw new IllegalArgumentException("Board uses a different lexicon");
+        }
+        this.board = board;
+        this.moves = moves;
+        loadRack(rack);
+        geometry = board.getGeometry();
+        int width = geometry.getWidth();
+        if (lineLetters.length < width) {
+            lineLetters = new char[width];
+            lineCross = new int[width];
+            lineAnchor = new boolean[width];
+            tiles = new char[width];
+        }
+    }
+
+    private void end() {
+        this.board = null;
+        this.moves = null;
+    }
+
+    private void loadRack(char[] rack) {
+        for (int i = 0; i < rackCounts.length; i++) {
+            rackCounts[i] = 0;
+        }
+        rackLetters = 0;
+        for (int i = 0; i < rack.length; i++) {
+            char tile = rack[i];
+            if (tile == Board.BLK) {
+                rackCounts[0]++;
+            }
+            else if (tile >= 'A' && tile <= 'Z') {
+                rackCounts[tile - '@']++;
+                rackLetters |= 1 << (tile - 'A');
+            }
+        }
+    }
+
+    // Copies one file into the line buffers using the geometry's line tables
+    private boolean loadLine(Board.Direction dir, int file) {
+        long anchors = getAnchors(board, dir, file);
+        if (anchors == 0) {
+            return false;
+        }
+        lineCells = geometry.getLine(dir, file);
+        lineLength = lineCells.length;
+        int start = geometry.getLineStart(dir, file);
+        for (int i = 0; i < lineLength; i++) {
+            int cell = lineCells[i];
+            char data = board.getCharAt(cell);
+            boolean letter = Board.isLetter(data);
+            lineLetters[i] = letter ? data : 0;
+            lineAnchor[i] = (anchors & (1L << (start + i))) != 0;
+            lineCross[i] = letter ? 0 : board.getCrossCheck(dir, cell);
+        }
+        return true;
+    }
+
+    private void searchLine() {
+        placedMask = 0;
+        for (anchor = 0; anchor < lineLength; anchor++) {
+            if (lineAnchor[anchor]) {
+                gen(anchor, lexicon.getGaddagRoot(), true, anchor);
+            }
+        }
+    }
+
+    private void gen(int pos, int node, boolean leftward, int leftEnd) {
+        char existing = lineLetters[pos];
+        if (existing != 0) {
+            int e = lexicon.findEdge(node, Lexicon.letterCode(existing));
+            if (e >= 0) {
+                goOn(pos, e, leftward, leftEnd);
+            }
+            return;
+        }
+        if (node == 0) return;
+
+        // Only letters the rack can still supply; the edge list is sorted, so
+        // the walk stops at the last of them instead of at the separator
+        int allowed = lineCross[pos] & ((rackCounts[0] > 0) ? Lexicon.ALL_LETTERS : rackLetters);
+        if ((allowed & Lexicon.ALL_LETTERS) == 0) return;
+        int lastLetter = 31 - Integer.numberOfLeadingZeros(allowed & Lexicon.ALL_LETTERS);
+        for (int e = node; ; e++) {
+            int letter = lexicon.edgeLetter(e);
+            if (letter > lastLetter) break;
+            if ((allowed & (1 << letter)) != 0) {
+                placedMask |= 1L << pos;
+                if (rackCounts[letter + 1] > 0) {
+                    if (--rackCounts[letter + 1] == 0) rackLetters &= ~(1 << letter);
+                    tiles[pos] = (char)('A' + letter);
+                    goOn(pos, e, leftward, leftEnd);
+                    rackCounts[letter + 1]++;
+                    rackLetters |= 1 << letter;
+                }
+                if (rackCounts[0] > 0) {
+                    rackCounts[0]--;
+                    tiles[pos] = (char)('a' + letter);
+                    goOn(pos, e, leftward, leftEnd);
+                    rackCounts[0]++;
+                }
+                placedMask &= ~(1L << pos);
+            }
+            if (lexicon.isLastEdge(e)) break;
+        }
+    }
+
+    private void goOn(int pos, int e, boolean leftward, int leftEnd) {
+        int next = lexicon.edgeTarget(e);
+        if (leftward) {
+            if (lexicon.edgeEndsWord(e) && isOpen(pos - 1) && isOpen(anchor + 1)) {
+                record(pos, anchor);
+            }
+            if (next == 0) return;
+            // Never cover an anchor to the left; that play belongs to it
+            if (pos > 0 && !(lineLetters[pos - 1] == 0 && lineAnchor[pos - 1])) {
+                gen(pos - 1, next, true, leftEnd);
+            }
+            if (isOpen(pos - 1) && anchor + 1 < lineLength) {
+                int sep = lexicon.findEdge(next, Lexicon.SEPARATOR);
+                if (sep >= 0) {
+                    gen(anchor + 1, lexicon.edgeTarget(sep), false, pos);
+                }
+            }
+        }
+        else {
+            if (lexicon.edgeEndsWord(e) && isOpen(pos + 1)) {
+                record(leftEnd, pos);
+            }
+            if (next != 0 && pos + 1 < lineLength) {
+                gen(pos + 1, next, false, leftEnd);
+            }
+        }
+    }
+
+    // True if the line position is off the line or holds no tile
+    private boolean isOpen(int pos) {
+        return pos < 0 || pos >= lineLength || lineLetters[pos] == 0;
+    }
+
+    private void record(int left, int right) {
+        int length = right - left + 1;
+        if (length < 2) return;
+        long placed = placedMask >>> left;
+        if (Long.bitCount(placed) == 1 && isDuplicateSingle(Long.numberOfTrailingZeros(placedMask))) {
+            return;
+        }
+
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            char existing = lineLetters[left + i];
+            word[i] = (existing != 0) ? existing : tiles[left + i];
+        }
+        int start = lineCells[left];
+        moves.add(new Move(direction, geometry.getCol(start), geometry.getRow(start), word, placed));
+    }
+
+    /*
+        A single tile can form words along several directions. Keep it only
+        in the first direction (by ordinal) where it makes a word of two or
+        more letters.
+    */
+    private boolean isDuplicateSingle(int pos) {
+        int cell = lineCells[pos];
+        for (Board.Direction dir : DIRECTIONS) {
+            if (dir.ordinal() >= direction.ordinal()) break;
+            if ((board.getHooks(dir, cell) & Board.TOUCHED) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/*
+    What a pool thread needs to generate plays without sharing anything:
+    its own MoveGenerator and a list to reuse for the plays. Tools that keep
+    more per thread extend it.
+
+    perThread gives each thread its own worker, made on first use. Given a
+    collection, it also adds every worker it makes, so a tool can merge
+    per-thread results afterwards.
+*/
+public class MoveWorker {
+    public MoveGenerator generator;
+    public List<Move> moves = new ArrayList<Move>();
+
+    public MoveWorker(Lexicon lexicon) {
+        this.generator = new MoveGenerator(lexicon);
+    }
+
+    public static <W extends MoveWorker> ThreadLocal<W> perThread(Supplier<W> factory) {
+        return perThread(factory, null);
+    }
+
+    public static <W extends MoveWorker> ThreadLocal<W> perThread(Supplier<W> factory, Collection<? super W> all) {
+        return ThreadLocal.withInitial(() -> {
+            W worker = factory.get();
+            if (all != null) {
+                all.add(worker);
+            }
+            return worker;
+        });
+    }
+}
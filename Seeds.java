@@ -0,0 +1,18 @@
+/*
+    Seed derivation for tools that play many games from one seed. Game i
+    gets mix(seed + i): neighbouring inputs give unrelated outputs, so any
+    game can be replayed from the seed and its index alone, without drawing
+    from a shared generator.
+*/
+public final class Seeds {
+    private Seeds() {
+    }
+
+    // SplitMix64 finaliser
+    public static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,275 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+    Monte Carlo simulation of candidate plays. Each rollout deals the
+    opponents a random guess at their racks from the unseen tiles, makes the
+    candidate play, then lets every player make their top-scoring play for a
+    few plies. A candidate's value is the mean change in the simming player's
+    spread.
+
+    Rollouts run on a ForkJoinPool in rounds. After each round, candidates
+    whose confidence interval falls entirely below the leader's are dropped,
+    and the run stops once only one candidate is left or every survivor has
+    maxRollouts. Every rollout seeds its own SplittableRandom from
+    (seed, candidate, rollout), so results do not depend on the thread count
+    or on scheduling. Each pool thread keeps its own scratch Game and
+    MoveGenerator.
+*/
+public class Simulator {
+    public static class Result {
+        private Move move;
+        private long rollouts;
+        private double sum;
+        private double sumSquares;
+        private boolean pruned;
+
+        private Result(Move move) {
+            this.move = move;
+        }
+
+        public Move getMove() {
+            return this.move;
+        }
+
+        public long getRollouts() {
+            return this.rollouts;
+        }
+
+        public double getMean() {
+            return (rollouts == 0) ? 0 : sum / rollouts;
+        }
+
+        public double getStdDev() {
+            if (rollouts < 2) return 0;
+            double mean = getMean();
+            return Math.sqrt(Math.max(0, (sumSquares - rollouts * mean * mean) / (rollouts - 1)));
+        }
+
+        public double getStdError() {
+            return (rollouts == 0) ? Double.POSITIVE_INFINITY : getStdDev() / Math.sqrt(rollouts);
+        }
+
+        public boolean isPruned() {
+            return this.pruned;
+        }
+
+        @Override
+        public String toString() {
+            return move+" mean="+String.format("%.2f", getMean())+" se="+String.format("%.2f", getStdError())
+                    +" n="+rollouts+(pruned ? " (pruned)" : "");
+        }
+    }
+
+    // What one thread needs to run rollouts without sharing anything
+    private static class Worker extends MoveWorker {
+        private Game game;
+
+        private Worker(Lexicon lexicon) {
+            super(lexicon);
+        }
+    }
+
+    private Lexicon lexicon;
+    private ForkJoinPool pool;
+    private ThreadLocal<Worker> workers;
+    private int plies = 2;
+    private int batchSize = 32;
+    private int chunkSize = 4;
+    private double confidence = 1.96;
+    private long seed = 1;
+    private double rolloutsPerSecond;
+
+    public Simulator(Lexicon lexicon) {
+        this(lexicon, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Simulator(Lexicon lexicon, int threads) {
+        this.lexicon = lexicon;
+        this.pool = new ForkJoinPool(threads);
+        this.workers = MoveWorker.perThread(() -> new Worker(this.lexicon));
+    }
+
+    // Plies played after the candidate, by opponent and player in turn
+    public void setPlies(int plies) {
+        this.plies = plies;
+    }
+
+    // Rollouts per live candidate per round
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    // z value of the confidence interval used for pruning (1.96 = 95%)
+    public void setConfidence(double confidence) {
+        this.confidence = confidence;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public double getRolloutsPerSecond() {
+        return rolloutsPerSecond;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /*
+        Sims the candidates for the given player and returns one Result per
+        candidate, best mean first. The game itself is not modified.
+    */
+    public List<Result> simulate(Game game, int playerIndex, List<Move> candidates, int maxRollouts) {
+        List<Result> results = new ArrayList<Result>();
+        for (Move move : candidates) {
+            results.add(new Result(move));
+        }
+        long start = System.nanoTime();
+        long total = 0;
+
+        // An interrupt stops the run after the current round
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+            List<Result> owners = new ArrayList<Result>();
+            for (int c = 0; c < results.size(); c++) {
+                Result result = results.get(c);
+                if (result.pruned || result.rollouts >= maxRollouts) continue;
+                int count = (int) Math.min(batchSize, maxRollouts - result.rollouts);
+                for (int first = 0; first < count; first += chunkSize) {
+                    final int candidate = c;
+                    final long from = result.rollouts + first;
+                    final int n = Math.min(chunkSize, count - first);
+                    tasks.add(() -> runChunk(game, playerIndex, results.get(candidate).move, candidate, from, n));
+                    owners.add(result);
+                }
+            }
+            if (tasks.isEmpty()) break;
+
+            List<Future<double[]>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                double[] partial;
+                try {
+                    partial = futures.get(i).get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return results;
+                }
+                catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+                Result owner = owners.get(i);
+                owner.rollouts += (long) partial[0];
+                owner.sum += partial[1];
+                owner.sumSquares += partial[2];
+                total += (long) partial[0];
+            }
+
+            if (prune(results) <= 1) break;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        rolloutsPerSecond = (seconds > 0) ? total / seconds : 0;
+        results.sort(Comparator.comparingDouble(Result::getMean).reversed());
+        return results;
+    }
+
+    // Drops candidates that are clearly behind the leader; returns how many remain
+    private int prune(List<Result> results) {
+        Result best = null;
+        for (Result result : results) {
+            if (!result.pruned && (best == null || result.getMean() > best.getMean())) {
+                best = result;
+            }
+        }
+        if (best == null) return 0;
+        double floor = best.getMean() - confidence * best.getStdError();
+        int live = 0;
+        for (Result result : results) {
+            if (result.pruned) continue;
+            if (result != best && result.rollouts >= 2
+                    && result.getMean() + confidence * result.getStdError() < floor) {
+                result.pruned = true;
+            }
+            else {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    // Returns { rollouts, sum, sum of squares }
+    private double[] runChunk(Game root, int playerIndex, Move candidate, int candidateIndex, long from, int n) {
+        Worker worker = workers.get();
+        double sum = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < n; i++) {
+            double value = rollout(worker, root, playerIndex, candidate, rolloutSeed(candidateIndex, from + i));
+            sum += value;
+            sumSquares += value * value;
+        }
+        return new double[] { n, sum, sumSquares };
+    }
+
+    private long rolloutSeed(int candidateIndex, long rollout) {
+        return Seeds.mix(Seeds.mix(seed ^ candidateIndex) + rollout);
+    }
+
+    private double rollout(Worker worker, Game root, int playerIndex, Move candidate, long rolloutSeed) {
+        SplittableRandom rng = new SplittableRandom(rolloutSeed);
+        if (worker.game == null || worker.game.numPlayers != root.numPlayers) {
+            worker.game = new Game(root, rng);
+        }
+        else {
+            worker.game.copyFrom(root);
+            worker.game.setRandom(rng);
+        }
+        Game game = worker.game;
+        game.randomizeUnseen(playerIndex);
+
+        int startSpread = spread(game, playerIndex);
+        game.applyMove(candidate, playerIndex);
+        int player = playerIndex;
+        for (int ply = 0; ply < plies && !game.isOver(); ply++) {
+            player = (player + 1) % game.numPlayers;
+            Move best = bestMove(worker, game, player);
+            if (best != null) {
+                game.applyMove(best, player);
+            }
+        }
+        return spread(game, playerIndex) - startSpread;
+    }
+
+    private static Move bestMove(Worker worker, Game game, int player) {
+        worker.moves.clear();
+        worker.generator.generate(game.board, game.playerRacks[player], worker.moves);
+        Move best = null;
+        int bestScore = -1;
+        for (Move move : worker.moves) {
+            int score = game.board.scoreMove(move);
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+        return best;
+    }
+
+    private static int spread(Game game, int playerIndex) {
+        int best = 0;
+        for (int p = 0; p < game.numPlayers; p++) {
+            if (p != playerIndex) {
+                best = Math.max(best, game.playerScores[p]);
+            }
+        }
+        return game.playerScores[playerIndex] - best;
+    }
+}
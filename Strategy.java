@@ -0,0 +1,79 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+    How a computer player picks its play. The tournament runner hands over
+    every legal move for the position; returning null passes. Implementations
+    are shared between threads, so keep per-game state out of them and use
+    the supplied generator for any randomness.
+*/
+public interface Strategy {
+    Move chooseMove(Game game, int playerIndex, List<Move> moves, SplittableRandom rng);
+
+    // Highest immediate score
+    Strategy GREEDY = (game, playerIndex, moves, rng) -> {
+        Move best = null;
+        int bestScore = -1;
+        for (Move move : moves) {
+            int score = game.board.scoreMove(move);
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+        return best;
+    };
+
+    // Any legal play, uniformly at random
+    Strategy RANDOM = (game, playerIndex, moves, rng) -> {
+        if (moves.isEmpty()) {
+            return null;
+        }
+        return moves.get(rng.nextInt(moves.size()));
+    };
+
+    /*
+        Highest score plus leave value. Once the bag is empty there is nothing
+        to draw to, so only the score counts.
+    */
+    static Strategy equity(LeaveTable leaves) {
+        return (game, playerIndex, moves, rng) -> {
+            boolean useLeaves = game.getNumTiles() > 0;
+            int[] rackCounts = LeaveTable.countRack(game.playerRacks[playerIndex], new int[LeaveTable.NUM_KINDS]);
+            Move best = null;
+            float bestEquity = Float.NEGATIVE_INFINITY;
+            for (Move move : moves) {
+                int score = game.board.scoreMove(move);
+                float equity = useLeaves ? leaves.getEquity(rackCounts, move, score) : score;
+                if (equity > bestEquity) {
+                    bestEquity = equity;
+                    best = move;
+                }
+            }
+            return best;
+        };
+    }
+
+    /*
+        Solves two-player endgames once the bag is empty, within the given
+        time per move, and otherwise plays like fallback. Each thread gets
+        its own solver. Only short endgames are solved exactly in a typical
+        budget; when time runs out this plays the best move of the deepest
+        finished search, which is a depth-limited estimate.
+    */
+    static Strategy withEndgame(Strategy fallback, long millis) {
+        ThreadLocal<EndgameSolver> solvers = new ThreadLocal<EndgameSolver>();
+        return (game, playerIndex, moves, rng) -> {
+            if (game.numPlayers != 2 || game.getNumTiles() > 0) {
+                return fallback.chooseMove(game, playerIndex, moves, rng);
+            }
+            EndgameSolver solver = solvers.get();
+            if (solver == null || solver.getLexicon() != game.lexicon) {
+                solver = new EndgameSolver(game.lexicon);
+                solver.setTimeBudget(millis);
+                solvers.set(solver);
+            }
+            return solver.solve(game, playerIndex).getBestMove();
+        };
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.SplittableRandom;
+
+/*
+    The tiles not yet drawn, as a count per kind (0 for a blank, 1-26 for
+    A-Z) with a Fenwick tree over the counts. Drawing picks a uniformly
+    random tile by finding which kind the n-th tile belongs to, which is a
+    five-step descent of the tree instead of a walk over every kind.
+    Returning and exchanging tiles are the same O(log n) updates.
+
+    Each bag draws from its own SplittableRandom. A copy is given its
+    generator rather than taking one from the original, so copying a bag
+    never changes what the original draws next, and copies made on
+    different threads share no state.
+*/
+public class TileBag {
+    public static final int NUM_KINDS = 27;
+
+    private static final int TREE_SIZE = 32; // Power of two >= NUM_KINDS, for the descent
+
+    private int[] counts = new int[NUM_KINDS];
+    private int[] tree = new int[TREE_SIZE + 1]; // 1-based Fenwick tree over counts
+    private int size;
+    private SplittableRandom rng;
+
+    public TileBag(int[] distribution, SplittableRandom rng) {
+        if (distribution.length != NUM_KINDS) {
+            throw new IllegalArgumentException("Tile distribution needs "+NUM_KINDS+" counts");
+        }
+        this.rng = rng;
+        for (int kind = 0; kind < NUM_KINDS; kind++) {
+            add(kind, distribution[kind]);
+        }
+    }
+
+    // Copy of another bag's tiles, drawing from the given generator
+    public TileBag(TileBag other, SplittableRandom rng) {
+        copyFrom(other);
+        this.rng = rng;
+    }
+
+    // Takes another bag's tiles, keeping this bag's own generator
+    public void copyFrom(TileBag other) {
+        System.arraycopy(other.counts, 0, counts, 0, NUM_KINDS);
+        System.arraycopy(other.tree, 0, tree, 0, tree.length);
+        size = other.size;
+    }
+
+    public void setRandom(SplittableRandom rng) {
+        this.rng = rng;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getCount(char tile) {
+        return counts[kindOf(tile)];
+    }
+
+    public int getCount(int kind) {
+        return counts[kind];
+    }
+
+    // Removes and returns a random tile, or EMT if the bag is empty
+    public char draw() {
+        if (size == 0) {
+            return Board.EMT;
+        }
+        int kind = findKind(rng.nextInt(size));
+        add(kind, -1);
+        return tileOf(kind);
+    }
+
+    // Puts a tile back in the bag
+    public void returnTile(char tile) {
+        add(kindOf(tile), 1);
+    }
+
+    // Takes a particular tile out of the bag; false if there is none left
+    public boolean remove(char tile) {
+        int kind = kindOf(tile);
+        if (counts[kind] == 0) {
+            return false;
+        }
+        add(kind, -1);
+        return true;
+    }
+
+    /*
+        Swaps tiles for the same number drawn from the bag, drawing before
+        the old tiles go back so a player can't get their own tiles again.
+        Drawn tiles overwrite tiles in place. Returns false, changing
+        nothing, if the bag holds fewer tiles than are being exchanged.
+    */
+    public boolean exchange(char[] tiles) {
+        if (tiles.length > size) {
+            return false;
+        }
+        char[] drawn = new char[tiles.length];
+        for (int i = 0; i < tiles.length; i++) {
+            drawn[i] = draw();
+        }
+        for (int i = 0; i < tiles.length; i++) {
+            returnTile(tiles[i]);
+            tiles[i] = drawn[i];
+        }
+        return true;
+    }
+
+    // Every tile in the bag, blanks first then A-Z
+    public char[] toCharArray() {
+        char[] tiles = new char[size];
+        int index = 0;
+        for (int kind = 0; kind < NUM_KINDS; kind++) {
+            for (int k = 0; k < counts[kind]; k++) {
+                tiles[index++] = tileOf(kind);
+            }
+        }
+        return tiles;
+    }
+
+    // Index into the counts: 0 for a blank, 1-26 for A-Z
+    public static int kindOf(char tile) {
+        return (tile == Board.BLK) ? 0 : tile - '@';
+    }
+
+    public static char tileOf(int kind) {
+        return (kind == 0) ? Board.BLK : (char)('@' + kind);
+    }
+
+    private void add(int kind, int delta) {
+        counts[kind] += delta;
+        size += delta;
+        for (int i = kind + 1; i <= TREE_SIZE; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Kind of the n-th tile (0-based) counting through the kinds in order
+    private int findKind(int n) {
+        int index = 0;
+        for (int step = TREE_SIZE; step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= TREE_SIZE && tree[next] <= n) {
+                index = next;
+                n -= tree[next];
+            }
+        }
+        // index is the longest prefix of kinds holding at most n tiles, so tile n is of the next kind
+        return index;
+    }
+}
@@ -0,0 +1,365 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/*
+    Headless self-play without JavaFX. Plays many complete games on a fixed
+    thread pool, seating the given strategies in rotation so each gets every
+    seat equally often. Finished games stream to a callback on the calling
+    thread in completion order. The summary reports games per second and
+    percentiles of the time taken per move (generation plus choice). With a
+    recorder set, every game is also appended to it as a GameRecord.
+
+    Usage: java Tournament <lexicon> [games] [threads] [seed] [records file]
+*/
+public class Tournament {
+    private static final int MAX_TURNS = 200;
+
+    public static class GameResult {
+        private long gameIndex;
+        private long seed;
+        private int[] scores; // Indexed by strategy, not by seat
+        private int firstStrategy;
+        private int turns;
+
+        public long getGameIndex() {
+            return this.gameIndex;
+        }
+
+        public long getSeed() {
+            return this.seed;
+        }
+
+        public int[] getScores() {
+            return this.scores;
+        }
+
+        public int getFirstStrategy() {
+            return this.firstStrategy;
+        }
+
+        public int getTurns() {
+            return this.turns;
+        }
+
+        // Strategy with the top score, or -1 on a tie
+        public int getWinner() {
+            int winner = -1;
+            int best = Integer.MIN_VALUE;
+            for (int i = 0; i < scores.length; i++) {
+                if (scores[i] > best) {
+                    best = scores[i];
+                    winner = i;
+                }
+                else if (scores[i] == best) {
+                    winner = -1;
+                }
+            }
+            return winner;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(gameIndex).append(',').append(seed).append(',').append(firstStrategy).append(',').append(turns);
+            for (int score : scores) {
+                sb.append(',').append(score);
+            }
+            return sb.toString();
+        }
+    }
+
+    /*
+        Log-linear histogram of nanosecond timings: eight sub-buckets per
+        power of two, so percentiles are within about 12%. Recording is one
+        array increment.
+    */
+    public static class LatencyHistogram {
+        private static final int SUB_BITS = 3;
+        private long[] counts = new long[64 << SUB_BITS];
+        private long total;
+        private long max;
+
+        public void record(long nanos) {
+            counts[bucket(Math.max(nanos, 1))]++;
+            total++;
+            max = Math.max(max, nanos);
+        }
+
+        public void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        // Upper bound of the bucket holding the given quantile (0-1)
+        public long getPercentile(double quantile) {
+            long target = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target && counts[i] > 0) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        private static int bucket(long value) {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent < SUB_BITS) {
+                return (int) value;
+            }
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+            return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < (1 << SUB_BITS)) {
+                return bucket;
+            }
+            int exponent = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+            long sub = bucket & ((1 << SUB_BITS) - 1);
+            return ((sub + (1 << SUB_BITS) + 1) << (exponent - SUB_BITS)) - 1;
+        }
+    }
+
+    public static class Summary {
+        private long games;
+        private long moves;
+        private double seconds;
+        private LatencyHistogram latency;
+        private long[] wins;
+
+        public double getGamesPerSecond() {
+            return (seconds > 0) ? games / seconds : 0;
+        }
+
+        public LatencyHistogram getLatency() {
+            return this.latency;
+        }
+
+        public long[] getWins() {
+            return this.wins;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, %d moves in %.2f s: %.1f games/s; move latency p50=%dus p90=%dus p99=%dus max=%dus; wins %s",
+                    games, moves, seconds, getGamesPerSecond(),
+                    latency.getPercentile(0.5) / 1000, latency.getPercentile(0.9) / 1000,
+                    latency.getPercentile(0.99) / 1000, latency.getMax() / 1000,
+                    Arrays.toString(wins));
+        }
+    }
+
+    // State owned by one pool thread
+    private static class Worker extends MoveWorker {
+        private LatencyHistogram latency = new LatencyHistogram();
+
+        private Worker(Lexicon lexicon) {
+            super(lexicon);
+        }
+    }
+
+    private Lexicon lexicon;
+    private Strategy[] strategies;
+    private ExecutorService pool;
+    private ConcurrentLinkedQueue<Worker> allWorkers = new ConcurrentLinkedQueue<Worker>();
+    private ThreadLocal<Worker> workers;
+    private int maxInFlight;
+    private GameRecordWriter recorder;
+
+    public Tournament(Lexicon lexicon, Strategy[] strategies, int threads) {
+        this.lexicon = lexicon;
+        this.maxInFlight = 4 * threads;
+        this.strategies = strategies;
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.workers = MoveWorker.perThread(() -> new Worker(this.lexicon), allWorkers);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Records every game played from now on, or none if null
+    public void setRecorder(GameRecordWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    /*
+        Plays numGames games. Game i uses seed Seeds.mix(seed + i), so any
+        single game can be replayed on its own.
+    */
+    public Summary run(long numGames, long seed, Consumer<GameResult> sink) throws InterruptedException {
+        for (Worker worker : allWorkers) {
+            worker.latency = new LatencyHistogram();
+        }
+        CompletionService<GameResult> completion = new ExecutorCompletionService<GameResult>(pool);
+        long start = System.nanoTime();
+        // Keep a bounded number of games queued so long runs use constant memory
+        long submitted = 0;
+        while (submitted < Math.min(numGames, maxInFlight)) {
+            submit(completion, submitted++, seed);
+        }
+
+        Summary summary = new Summary();
+        summary.wins = new long[strategies.length];
+        for (long i = 0; i < numGames; i++) {
+            GameResult result;
+            try {
+                result = completion.take().get();
+            }
+            catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            if (submitted < numGames) {
+                submit(completion, submitted++, seed);
+            }
+            summary.games++;
+            summary.moves += result.turns;
+            int winner = result.getWinner();
+            if (winner >= 0) {
+                summary.wins[winner]++;
+            }
+            if (sink != null) {
+                sink.accept(result);
+            }
+        }
+        summary.seconds = (System.nanoTime() - start) / 1e9;
+
+        // All tasks are done, so the per-thread histograms are no longer written
+        summary.latency = new LatencyHistogram();
+        for (Worker worker : allWorkers) {
+            summary.latency.add(worker.latency);
+        }
+        return summary;
+    }
+
+    private void submit(CompletionService<GameResult> completion, long index, long seed) {
+        final long gameSeed = Seeds.mix(seed + index);
+        completion.submit(() -> playGame(index, gameSeed));
+    }
+
+    private GameResult playGame(long gameIndex, long seed) {
+        Worker worker = workers.get();
+        SplittableRandom rng = new SplittableRandom(seed);
+        int numPlayers = strategies.length;
+        Game game = new Game(lexicon, numPlayers, rng.split());
+        int first = (int) (gameIndex % numPlayers);
+        GameRecord record = (recorder == null) ? null : new GameRecord(seed, game);
+
+        int player = 0;
+        int passes = 0;
+        int turns = 0;
+        while (!game.isOver() && passes < 2 * numPlayers && turns < MAX_TURNS) {
+            Strategy strategy = strategies[(player + first) % numPlayers];
+            long t0 = System.nanoTime();
+            worker.moves.clear();
+            worker.generator.generate(game.board, game.playerRacks[player], worker.moves);
+            Move move = strategy.chooseMove(game, player, worker.moves, rng);
+            worker.latency.record(System.nanoTime() - t0);
+
+            if (move == null) {
+                passes++;
+                if (record != null) {
+                    record.addPass(player);
+                }
+            }
+            else {
+                char[] rackBefore = (record == null) ? null : game.playerRacks[player].clone();
+                int score = game.applyMove(move, player);
+                if (record != null) {
+                    record.addPlay(player, move, score, rackBefore, game.playerRacks[player]);
+                }
+                passes = 0;
+            }
+            turns++;
+            player = (player + 1) % numPlayers;
+        }
+
+        GameResult result = new GameResult();
+        result.gameIndex = gameIndex;
+        result.seed = seed;
+        result.firstStrategy = first;
+        result.turns = turns;
+        result.scores = new int[numPlayers];
+        for (int p = 0; p < numPlayers; p++) {
+            result.scores[(p + first) % numPlayers] = game.playerScores[p];
+        }
+        if (record != null) {
+            try {
+                recorder.append(record);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java Tournament <lexicon> [games] [threads] [seed] [records file]");
+            return;
+        }
+        long games = (args.length > 1) ? Long.parseLong(args[1]) : 1000;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : 1;
+
+        Lexicon lexicon;
+        try {
+            lexicon = LexiconRegistry.get(args[0]);
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: couldn't load "+args[0]+": "+e.getMessage());
+            return;
+        }
+
+        GameRecordWriter recorder = null;
+        if (args.length > 4) {
+            try {
+                recorder = new GameRecordWriter(args[4]);
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: couldn't open "+args[4]+": "+e.getMessage());
+                return;
+            }
+        }
+
+        Tournament tournament = new Tournament(lexicon, new Strategy[] { Strategy.GREEDY, Strategy.RANDOM }, threads);
+        tournament.setRecorder(recorder);
+        System.out.println("game,seed,first,turns,greedy,random");
+        Summary summary = tournament.run(games, seed, result -> System.out.println(result));
+        tournament.shutdown();
+        System.out.println(summary);
+        if (recorder != null) {
+            try {
+                recorder.close();
+            }
+            catch (IOException e) {
+                System.out.println("ERROR: couldn't write "+args[4]+": "+e.getMessage());
+                return;
+            }
+            System.out.println("Recorded "+recorder.getRecordsWritten()+" games -> "+args[4]);
+        }
+    }
+}
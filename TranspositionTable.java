@@ -0,0 +1,151 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    Fixed-size hash table of search results keyed by Zobrist hashes
+    (Board.getHash, Game.getPositionHash), safe to share between threads
+    without locks.
+
+    Each entry is two longs, (key ^ data, data). A reader accepts an entry
+    only if the two halves XOR back to its key, so an entry torn by a
+    concurrent write reads as a miss instead of as wrong data. Entries are
+    grouped into buckets of BUCKET_SIZE; the replacement policy picks which
+    entry of a full bucket to overwrite.
+
+    Data layout:
+        bits 0-31   value
+        bits 32-39  depth (0-255)
+        bits 40-41  bound (EXACT, LOWER, UPPER)
+        bits 42-46  age, the search generation that wrote it
+        bits 47-62  move index + 1 (0 = none)
+        bit 63      always set, so a stored entry is never 0
+*/
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+    public static final int NO_MOVE = -1;
+    public static final int BUCKET_SIZE = 4;
+
+    public enum Replacement {
+        ALWAYS,          // Overwrite the first slot of the bucket
+        DEPTH_PREFERRED, // Overwrite the shallowest entry
+        AGED_DEPTH       // Overwrite entries from old searches first, then the shallowest
+    }
+
+    private static final long PRESENT = 1L << 63;
+    private static final int AGE_MASK = 0x1F;
+    private static final int MOVE_MASK = 0xFFFF;
+
+    private final AtomicLongArray table;
+    private final int bucketMask;
+    private final Replacement replacement;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // Table with 2^log2Entries entries
+    public TranspositionTable(int log2Entries, Replacement replacement) {
+        if (log2Entries < 2 || log2Entries > 28) {
+            throw new IllegalArgumentException("log2Entries must be between 2 and 28");
+        }
+        int entries = 1 << log2Entries;
+        this.table = new AtomicLongArray(2 * entries);
+        this.bucketMask = (entries / BUCKET_SIZE) - 1;
+        this.replacement = replacement;
+    }
+
+    public int getNumEntries() {
+        return table.length() / 2;
+    }
+
+    // Call at the start of each search so older entries can be recognised
+    public void newSearch() {
+        generation.incrementAndGet();
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, 0);
+        }
+    }
+
+    // The stored data for key, or 0 if there is none
+    public long probe(long key) {
+        int base = bucketBase(key);
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            int slot = base + 2 * i;
+            long data = table.get(slot + 1);
+            if (data != 0 && (table.get(slot) ^ data) == key) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    public void store(long key, int value, int depth, int bound, int move) {
+        int age = generation.get() & AGE_MASK;
+        long data = PRESENT
+                | (value & 0xFFFFFFFFL)
+                | ((long) Math.min(Math.max(depth, 0), 255) << 32)
+                | ((long) (bound & 3) << 40)
+                | ((long) age << 42)
+                | ((long) ((move + 1) & MOVE_MASK) << 47);
+
+        int base = bucketBase(key);
+        int victim = base;
+        int victimScore = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            int slot = base + 2 * i;
+            long old = table.get(slot + 1);
+            if (old == 0 || (table.get(slot) ^ old) == key) {
+                // Empty slot, or the same position: always reuse it
+                victim = slot;
+                break;
+            }
+            int score = replacementScore(old, age);
+            if (score < victimScore) {
+                victimScore = score;
+                victim = slot;
+            }
+        }
+        table.set(victim + 1, data);
+        table.set(victim, key ^ data);
+    }
+
+    // Lower scores are replaced first
+    private int replacementScore(long data, int age) {
+        switch (replacement) {
+            case ALWAYS:
+                return 0;
+            case DEPTH_PREFERRED:
+                return getDepth(data);
+            default:
+                int stale = (getAge(data) == age) ? 256 : 0;
+                return stale + getDepth(data);
+        }
+    }
+
+    private int bucketBase(long key) {
+        int bucket = (int) (key ^ (key >>> 32)) & bucketMask;
+        return bucket * BUCKET_SIZE * 2;
+    }
+
+    public static int getValue(long data) {
+        return (int) data;
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> 40) & 3;
+    }
+
+    public static int getAge(long data) {
+        return (int) (data >>> 42) & AGE_MASK;
+    }
+
+    public static int getMove(long data) {
+        return ((int) (data >>> 47) & MOVE_MASK) - 1;
+    }
+}
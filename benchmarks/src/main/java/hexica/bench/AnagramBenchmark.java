@@ -0,0 +1,113 @@
+package hexica.bench;
+
+import hexica.AnagramIndex;
+import hexica.Board;
+import hexica.Game;
+import hexica.Lexicon;
+import hexica.Move;
+import hexica.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+    AnagramIndex queries with the racks of the mid-game positions, each with
+    two blanks added, on their own and against patterns taken from plays
+    that run through tiles on the board. The full lists run to thousands of
+    words; rackBest asks for the top BEST as a hint would, and rackCount
+    only counts.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnagramBenchmark {
+    private static final int BEST = 20;
+
+    @Param({"../lexicons/nwl18.txt"})
+    public String lexiconFile;
+
+    private AnagramIndex index;
+    private char[][] racks;
+    private char[][] patternRacks;
+    private String[] patterns;
+    private int rackIndex;
+    private int patternIndex;
+
+    @Setup
+    public void setUp() {
+        Lexicon lexicon = Positions.lexicon(lexiconFile);
+        index = new AnagramIndex(lexicon);
+        MoveGenerator generator = new MoveGenerator(lexicon);
+        List<char[]> rackList = new ArrayList<char[]>();
+        List<char[]> patternRackList = new ArrayList<char[]>();
+        List<String> patternList = new ArrayList<String>();
+        for (Game game : Positions.midGames(lexicon)) {
+            for (char[] rack : game.playerRacks) {
+                char[] withBlanks = Arrays.copyOf(rack, rack.length + 2);
+                withBlanks[rack.length] = Board.BLK;
+                withBlanks[rack.length + 1] = Board.BLK;
+                rackList.add(withBlanks);
+
+                for (Move move : generator.generate(game.board, rack)) {
+                    if (move.getNumTilesPlaced() == move.getWord().length || patternList.size() >= 64 * rackList.size()) continue;
+                    char[] pattern = move.getWord().clone();
+                    for (int i = 0; i < pattern.length; i++) {
+                        if (move.isPlaced(i)) pattern[i] = Board.BLK;
+                    }
+                    patternRackList.add(withBlanks);
+                    patternList.add(new String(pattern));
+                }
+            }
+        }
+        racks = rackList.toArray(new char[0][]);
+        patternRacks = patternRackList.toArray(new char[0][]);
+        patterns = patternList.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public int rack() {
+        rackIndex = (rackIndex + 1) % racks.length;
+        return index.query(racks[rackIndex]).size();
+    }
+
+    @Benchmark
+    public int rackBest() {
+        rackIndex = (rackIndex + 1) % racks.length;
+        return index.query(racks[rackIndex], null, BEST).size();
+    }
+
+    @Benchmark
+    public int rackCount() {
+        rackIndex = (rackIndex + 1) % racks.length;
+        return index.count(racks[rackIndex], null);
+    }
+
+    @Benchmark
+    public int rackAndPatternBest() {
+        patternIndex = (patternIndex + 1) % patterns.length;
+        return index.query(patternRacks[patternIndex], patterns[patternIndex], BEST).size();
+    }
+
+    @Benchmark
+    public int rackAndPattern() {
+        patternIndex = (patternIndex + 1) % patterns.length;
+        return index.query(patternRacks[patternIndex], patterns[patternIndex]).size();
+    }
+}
@@ -0,0 +1,130 @@
+package hexica.bench;
+
+import hexica.Board;
+import hexica.Game;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+    Coordinate translation and strand access. Each operation sweeps every
+    (direction, file, pos) of the board once, so the allocating and the
+    table-driven APIs can be compared per sweep.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    private static final Board.Direction[] DIRECTIONS = Board.Direction.values();
+
+    @Param({"../lexicons/nwl18.txt"})
+    public String lexiconFile;
+
+    private Board board;
+    private Board.Strand[] strands;
+
+    @Setup
+    public void setUp() {
+        Game game = Positions.midGame(Positions.lexicon(lexiconFile), Positions.SEEDS[0]);
+        board = game.board;
+        strands = new Board.Strand[DIRECTIONS.length * Board.BOARD_WIDTH];
+        int i = 0;
+        for (Board.Direction direction : DIRECTIONS) {
+            for (int file = 0; file < Board.BOARD_WIDTH; file++) {
+                int[] line = Board.getLine(direction, file);
+                int start = Board.getLineStart(direction, file);
+                strands[i++] = new Board.Strand(direction, file, start, start + line.length - 1);
+            }
+        }
+    }
+
+    @Benchmark
+    public int getCharAtFilePos() {
+        int sum = 0;
+        for (Board.Direction direction : DIRECTIONS) {
+            for (int file = 0; file < Board.BOARD_WIDTH; file++) {
+                for (int pos = 0; pos < Board.BOARD_WIDTH; pos++) {
+                    sum += board.getCharAt(direction, file, pos);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int getColRowFromFilePos() {
+        int sum = 0;
+        for (Board.Direction direction : DIRECTIONS) {
+            for (int file = 0; file < Board.BOARD_WIDTH; file++) {
+                for (int pos = 0; pos < Board.BOARD_WIDTH; pos++) {
+                    int[] coords = Board.getColRowFromFilePos(direction, file, pos);
+                    sum += coords[0] + coords[1];
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int getCellFromFilePos() {
+        int sum = 0;
+        for (Board.Direction direction : DIRECTIONS) {
+            for (int file = 0; file < Board.BOARD_WIDTH; file++) {
+                for (int pos = 0; pos < Board.BOARD_WIDTH; pos++) {
+                    sum += Board.getCellFromFilePos(direction, file, pos);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int lineTables() {
+        int sum = 0;
+        for (Board.Direction direction : DIRECTIONS) {
+            for (int file = 0; file < Board.BOARD_WIDTH; file++) {
+                for (int cell : Board.getLine(direction, file)) {
+                    sum += board.getCharAt(cell);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int strandGetCoords() {
+        int sum = 0;
+        for (Board.Strand strand : strands) {
+            int[] coords = strand.getCoords();
+            for (int i = 0; i < coords.length; i += 2) {
+                sum += board.getCharAt(coords[i], coords[i + 1]);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int strandGetColRow() {
+        int sum = 0;
+        for (Board.Strand strand : strands) {
+            for (int i = 0; i < strand.getLength(); i++) {
+                sum += board.getCharAt(strand.getCol(i), strand.getRow(i));
+            }
+        }
+        return sum;
+    }
+}
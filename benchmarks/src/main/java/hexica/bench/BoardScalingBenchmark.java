@@ -0,0 +1,200 @@
+package hexica.bench;
+
+import hexica.BitBoard;
+import hexica.Board;
+import hexica.Game;
+import hexica.Lexicon;
+import hexica.Move;
+import hexica.MoveGenerator;
+import hexica.TileBag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+    How the hot board operations grow with the board's radius. Each position
+    is greedy self-play on a board of that radius, carried on until it has
+    as many tiles per cell as the standard mid-game positions, with racks
+    dealt from the standard distribution (a fresh bag whenever one runs
+    out). The rack to move with is the same at every radius. Boards of
+    radius 7, 10, 15 and 20 have 169, 331, 721 and 1261 cells, so the times
+    can be read against the area.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardScalingBenchmark {
+    @Param({"../lexicons/nwl18.txt"})
+    public String lexiconFile;
+
+    @Param({"7", "10", "15", "20"})
+    public int radius;
+
+    private Board[] boards;
+    private char[][] racks;
+    private Move[] bestMoves;
+    private List<List<Move>> movesByBoard = new ArrayList<List<Move>>();
+    private MoveGenerator generator;
+    private List<Move> moves = new ArrayList<Move>();
+    private Board scratch;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Lexicon lexicon = Positions.lexicon(lexiconFile);
+        generator = new MoveGenerator(lexicon);
+        int n = Positions.SEEDS.length;
+        boards = new Board[n];
+        racks = new char[n][];
+        bestMoves = new Move[n];
+        for (int i = 0; i < n; i++) {
+            // Rack first, so every radius is measured with the same racks
+            SplittableRandom rng = new SplittableRandom(Positions.SEEDS[i]);
+            racks[i] = deal(new TileBag(Game.getDefaultTileDistribution(), rng));
+            boards[i] = midGame(lexicon, rng.split());
+            List<Move> list = generator.generate(boards[i], racks[i]);
+            movesByBoard.add(list);
+            bestMoves[i] = best(boards[i], list);
+        }
+        scratch = new Board(boards[0]);
+    }
+
+    private Board midGame(Lexicon lexicon, SplittableRandom rng) {
+        Board board = new Board(lexicon, radius);
+        int standardCells = Board.Geometry.of(Board.STANDARD_RADIUS).getNumCells();
+        int plies = Math.round((float) Positions.MID_GAME_PLIES * board.getGeometry().getNumCells() / standardCells);
+        TileBag bag = new TileBag(Game.getDefaultTileDistribution(), rng);
+        for (int ply = 0; ply < plies; ply++) {
+            if (bag.size() < Game.NUM_TILES_IN_RACK) {
+                bag = new TileBag(Game.getDefaultTileDistribution(), rng);
+            }
+            Move move = best(board, generator.generate(board, deal(bag)));
+            if (move != null) {
+                for (Board.Tile tile : move.getTiles()) {
+                    board.placeTile(tile);
+                }
+            }
+        }
+        return board;
+    }
+
+    private static char[] deal(TileBag bag) {
+        char[] rack = new char[Game.NUM_TILES_IN_RACK];
+        for (int i = 0; i < rack.length; i++) {
+            rack[i] = bag.draw();
+        }
+        return rack;
+    }
+
+    private static Move best(Board board, List<Move> list) {
+        Move best = null;
+        int bestScore = -1;
+        for (Move move : list) {
+            int score = board.scoreMove(move);
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+        return best;
+    }
+
+    private int next() {
+        index = (index + 1) % boards.length;
+        return index;
+    }
+
+    @Benchmark
+    public int generate() {
+        int i = next();
+        moves.clear();
+        generator.generate(boards[i], racks[i], moves);
+        return moves.size();
+    }
+
+    @Benchmark
+    public int scoreMoves() {
+        int i = next();
+        int sum = 0;
+        for (Move move : movesByBoard.get(i)) {
+            sum += boards[i].scoreMove(move);
+        }
+        return sum;
+    }
+
+    // Plays the best move and takes it back again, which is mostly cross-check upkeep
+    @Benchmark
+    public long placeAndRemove() {
+        int i = next();
+        Board board = boards[i];
+        Move move = bestMoves[i];
+        if (move == null) {
+            return 0;
+        }
+        List<Board.Tile> tiles = move.getTiles();
+        for (Board.Tile tile : tiles) {
+            board.placeTile(tile);
+        }
+        long hash = board.getHash();
+        for (Board.Tile tile : tiles) {
+            board.removeTile(tile.getCol(), tile.getRow());
+        }
+        return hash;
+    }
+
+    // Finding every anchor cell by cell, as generators did before BitBoard
+    @Benchmark
+    public int anchorsByCell() {
+        Board board = boards[next()];
+        Board.Geometry geometry = board.getGeometry();
+        int count = 0;
+        for (Board.Direction direction : Board.Direction.values()) {
+            for (int file = 0; file < geometry.getWidth(); file++) {
+                for (int cell : geometry.getLine(direction, file)) {
+                    if (board.isAnchor(cell)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // The same anchors a file at a time from the board's BitBoard
+    @Benchmark
+    public int anchorsByBitBoard() {
+        Board board = boards[next()];
+        BitBoard bits = board.getBitBoard();
+        int count = 0;
+        for (Board.Direction direction : Board.Direction.values()) {
+            for (int file = 0; file < board.getGeometry().getWidth(); file++) {
+                count += Long.bitCount(bits.getAnchors(direction, file));
+            }
+        }
+        return count;
+    }
+
+    // Resetting a scratch board, as simulations do before every rollout
+    @Benchmark
+    public int copyBoard() {
+        scratch.copyFrom(boards[next()]);
+        return scratch.getTileCount();
+    }
+}
@@ -0,0 +1,87 @@
+package hexica.bench;
+
+import hexica.Game;
+import hexica.Lexicon;
+import hexica.Move;
+import hexica.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Game.checkWord and the lexicon queries behind it
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexiconBenchmark {
+    @Param({"../lexicons/nwl18.txt"})
+    public String lexiconFile;
+
+    private Game game;
+    private Lexicon lexicon;
+    private String[] hits;
+    private String[] misses;
+    private char[][] hitChars;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        lexicon = Positions.lexicon(lexiconFile);
+        game = Positions.midGame(lexicon, Positions.SEEDS[0]);
+
+        // Real words from the plays available in the position
+        List<Move> moves = new MoveGenerator(lexicon).generate(game.board, game.playerRacks[0]);
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < moves.size() && words.size() < 1024; i += 1 + moves.size() / 1024) {
+            words.add(moves.get(i).getWordString().toUpperCase());
+        }
+        hits = words.toArray(new String[0]);
+        misses = new String[hits.length];
+        hitChars = new char[hits.length][];
+        for (int i = 0; i < hits.length; i++) {
+            misses[i] = hits[i] + "QX";
+            hitChars[i] = hits[i].toCharArray();
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & 0x3FF;
+        return index % hits.length;
+    }
+
+    @Benchmark
+    public boolean checkWordHit() {
+        return game.checkWord(hits[next()]);
+    }
+
+    @Benchmark
+    public boolean checkWordMiss() {
+        return game.checkWord(misses[next()]);
+    }
+
+    @Benchmark
+    public boolean containsChars() {
+        char[] word = hitChars[next()];
+        return lexicon.contains(word, 0, word.length);
+    }
+
+    @Benchmark
+    public int frontHooks() {
+        return lexicon.frontHooks(hits[next()]);
+    }
+}
@@ -0,0 +1,90 @@
+package hexica.bench;
+
+import hexica.Game;
+import hexica.Lexicon;
+import hexica.Move;
+import hexica.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+    Move generation and scoring on the fixed mid-game positions. Each
+    operation works on one position and rack, cycling through them.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+    @Param({"../lexicons/nwl18.txt"})
+    public String lexiconFile;
+
+    private Game[] games;
+    private MoveGenerator generator;
+    private List<Move> moves = new ArrayList<Move>();
+    private List<List<Move>> movesByGame = new ArrayList<List<Move>>();
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Lexicon lexicon = Positions.lexicon(lexiconFile);
+        games = Positions.midGames(lexicon);
+        generator = new MoveGenerator(lexicon);
+        for (Game game : games) {
+            movesByGame.add(generator.generate(game.board, game.playerRacks[0]));
+        }
+    }
+
+    private int next() {
+        index = (index + 1) % games.length;
+        return index;
+    }
+
+    @Benchmark
+    public int generate() {
+        Game game = games[next()];
+        moves.clear();
+        generator.generate(game.board, game.playerRacks[0], moves);
+        return moves.size();
+    }
+
+    // Scores every generated play of a position with the allocation-free path
+    @Benchmark
+    public int scoreMoves() {
+        int i = next();
+        Game game = games[i];
+        int sum = 0;
+        for (Move move : movesByGame.get(i)) {
+            sum += game.board.scoreMove(move);
+        }
+        return sum;
+    }
+
+    // Validates and scores every generated play of a position from its tiles
+    @Benchmark
+    public int scoreTilePlacement() {
+        int i = next();
+        Game game = games[i];
+        int sum = 0;
+        for (Move move : movesByGame.get(i)) {
+            sum += game.board.scoreTilePlacement(move.getTiles());
+        }
+        return sum;
+    }
+}
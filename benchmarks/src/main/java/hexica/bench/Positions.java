@@ -0,0 +1,72 @@
+package hexica.bench;
+
+import hexica.Board;
+import hexica.Game;
+import hexica.Lexicon;
+import hexica.LexiconRegistry;
+import hexica.Move;
+import hexica.MoveGenerator;
+import hexica.Strategy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+    Fixed, seeded positions shared by the benchmarks. A mid-game position is
+    a two-player game where both sides have made their greedy play for a set
+    number of plies, so the same seed always gives the same board and racks.
+*/
+public final class Positions {
+    public static final long[] SEEDS = { 1, 2, 3, 4 };
+    public static final int MID_GAME_PLIES = 8;
+
+    private Positions() {
+    }
+
+    public static Lexicon lexicon(String filename) {
+        try {
+            return LexiconRegistry.get(filename);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Benchmarks need a word list; pass -p lexiconFile=<path>", e);
+        }
+    }
+
+    public static Game midGame(Lexicon lexicon, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        Game game = new Game(lexicon, 2, rng);
+        MoveGenerator generator = new MoveGenerator(lexicon);
+        for (int ply = 0; ply < MID_GAME_PLIES; ply++) {
+            int player = ply % 2;
+            List<Move> moves = generator.generate(game.board, game.playerRacks[player]);
+            Move move = Strategy.GREEDY.chooseMove(game, player, moves, rng);
+            if (move != null) {
+                game.applyMove(move, player);
+            }
+        }
+        return game;
+    }
+
+    public static Game[] midGames(Lexicon lexicon) {
+        Game[] games = new Game[SEEDS.length];
+        for (int i = 0; i < SEEDS.length; i++) {
+            games[i] = midGame(lexicon, SEEDS[i]);
+        }
+        return games;
+    }
+
+    // Letters of every file of a board, useful as a pool of real words and non-words
+    public static String[] boardStrings(Board board) {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < Board.BOARD_WIDTH; row++) {
+            for (int col = 0; col < Board.BOARD_WIDTH; col++) {
+                char data = board.getCharAt(col, row);
+                sb.append(Board.isLetter(data) ? Character.toUpperCase(data) : ' ');
+            }
+            sb.append(' ');
+        }
+        return sb.toString().trim().split(" +");
+    }
+}
@@ -0,0 +1,69 @@
+package hexica.bench;
+
+import hexica.Board;
+import hexica.Game;
+import hexica.Lexicon;
+import hexica.TileBag;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+    Game.drawTile and Game.restockRack. The bag is topped back up from a
+    snapshot whenever it runs low, which costs a couple of small array
+    copies every few dozen operations.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileBagBenchmark {
+    @Param({"../lexicons/nwl18.txt"})
+    public String lexiconFile;
+
+    private Game game;
+    private TileBag fullBag;
+
+    @Setup
+    public void setUp() {
+        Lexicon lexicon = Positions.lexicon(lexiconFile);
+        game = new Game(lexicon, 1, new SplittableRandom(42));
+        fullBag = new TileBag(game.tileBag, new SplittableRandom(42));
+    }
+
+    private void refillBagIfLow() {
+        if (game.tileBag.size() < Game.NUM_TILES_IN_RACK) {
+            game.tileBag.copyFrom(fullBag);
+        }
+    }
+
+    @Benchmark
+    public char drawTile() {
+        refillBagIfLow();
+        return game.drawTile();
+    }
+
+    @Benchmark
+    public boolean restockRack() {
+        refillBagIfLow();
+        char[] rack = game.playerRacks[0];
+        for (int i = 0; i < rack.length; i++) {
+            rack[i] = Board.EMT;
+        }
+        return game.restockRack(0);
+    }
+}